@@ -0,0 +1,17 @@
+package com.shashki;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/** Keeps the learned AiPlayer weights in the "ai" SharedPreferences. */
+public class PrefsStore implements AiPlayer.Store {
+  private final SharedPreferences prefs;
+
+  public PrefsStore(Context ctx) {
+    prefs = ctx.getSharedPreferences("ai", Context.MODE_PRIVATE);
+  }
+
+  @Override public float getFloat(String key, float def) { return prefs.getFloat(key, def); }
+  @Override public void putFloat(String key, float value) { prefs.edit().putFloat(key, value).apply(); }
+  @Override public void clear() { prefs.edit().clear().apply(); }
+}
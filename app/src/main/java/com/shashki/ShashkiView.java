@@ -11,18 +11,27 @@ import android.graphics.Rect;
 import android.graphics.RectF;
 import android.os.SystemClock;
 import android.text.InputType;
+import android.util.Log;
+import android.view.Choreographer;
 import android.view.MotionEvent;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 import android.widget.EditText;
 
 import com.shashki.audio.SoundManager;
+import com.shashki.engine.Nnue;
+import com.shashki.engine.OpeningBook;
+import com.shashki.engine.Search;
+import com.shashki.engine.Tablebase;
 import com.shashki.gfx.SpriteStore;
 import com.shashki.net.LanClient;
 import com.shashki.net.LanHost;
 import com.shashki.net.LanLink;
 import com.shashki.net.NetMessage;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.Socket;
 import java.util.ArrayList;
 import java.util.List;
@@ -40,14 +49,20 @@ public class ShashkiView extends SurfaceView implements SurfaceHolder.Callback {
   private final SoundManager sfx;
   private final SharedPreferences prefs;
 
-  private volatile boolean running = false;
-  private Thread loopThread;
+  // frames are drawn on the UI thread at vsync, and only after requestRender() marked one dirty
+  private final Choreographer choreographer = Choreographer.getInstance();
+  private final Choreographer.FrameCallback frame = this::doFrame;
+  private boolean surfaceReady, frameScheduled, dirty;
+  private int frames; // rendered since the last per-minute report
+  private final Runnable reportFrames = this::reportFrames;
 
   private boolean soundOn;
   private boolean reduceMotion;
   private AiPlayer.Level aiLevel;
   private boolean aiLearning;
   private int languageMode; // 0 system, 1 ru, 2 uk, 3 en
+  private boolean hintOn;
+  private int variant; // rules and board, see variantRules
   private String lastJoinIp = "192.168.0.2";
 
   private Screen screen = Screen.MENU;
@@ -60,17 +75,38 @@ public class ShashkiView extends SurfaceView implements SurfaceHolder.Callback {
   private int W = 1, H = 1;
 
   private RectF btnPlayAI, btnPlayHot, btnMulti, btnSettings;
-  private RectF btnBack, btnReset, btnUndo, btnSound;
+  private RectF btnBack, btnReset, btnUndo, btnSound, btnHint;
   private RectF btnHost, btnJoin;
 
+  // settings rows: left edge, top, pitch and height, fitted between the title and the back button
+  private static final int SETTING_ROWS = 7;
+  private float setX, setY, setRow = 1f, setRowH = 1f;
+
   private final RectF boardRect = new RectF();
   private float cell = 1f;
+  // what doesn't change between moves on the game screen, drawn once per layout (see gameLayer)
+  private Bitmap gameLayer;
 
-  private final GameState game;
+  private volatile GameState game; // replaced when the variant changes
   private final AiPlayer ai;
 
   private List<Move> selMoves = new ArrayList<>();
 
+  // hint mode: the latest analysis of the position on screen, written by the engine thread
+  // and picked up by the next frame; one of an older position is ignored
+  private static final int HINT_SHOWN = 3;
+  private static final class Hint {
+    final GameState game; // versions restart with every new game, so the game is part of the match
+    final int version, depth;
+    final List<Search.Line> lines;
+    Hint(GameState game, int version, int depth, List<Search.Line> lines) {
+      this.game = game; this.version = version; this.depth = depth; this.lines = lines;
+    }
+    boolean of(GameState g) { return game == g && version == g.version; }
+  }
+  private volatile Hint hint;
+  private final Paint hintPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
   // network
   private static final int PORT = 34567;
   private final LanHost host = new LanHost();
@@ -91,6 +127,8 @@ public class ShashkiView extends SurfaceView implements SurfaceHolder.Callback {
     soundOn = prefs.getBoolean("soundOn", true);
     reduceMotion = prefs.getBoolean("reduceMotion", true);
     aiLearning = prefs.getBoolean("aiLearning", true);
+    hintOn = prefs.getBoolean("hints", false);
+    variant = prefs.getInt("variant", 0);
 
     int lvl = prefs.getInt("aiLevel", 1);
     aiLevel = (lvl == 0) ? AiPlayer.Level.EASY : (lvl == 2 ? AiPlayer.Level.HARD : AiPlayer.Level.NORMAL);
@@ -100,11 +138,14 @@ public class ShashkiView extends SurfaceView implements SurfaceHolder.Callback {
 
     sfx.setEnabled(soundOn);
 
-    ai = new AiPlayer(context);
+    ai = new AiPlayer(new PrefsStore(context));
     ai.level = aiLevel;
+    // leave cores for the UI and render threads
+    ai.threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
     ai.learningEnabled = aiLearning;
+    ai.ponder = true;
 
-    game = new GameState(Rules.russian());
+    loadVariant();
 
     setFocusable(true);
     setFocusableInTouchMode(true);
@@ -112,48 +153,44 @@ public class ShashkiView extends SurfaceView implements SurfaceHolder.Callback {
 
   // ===== Hooks for MainActivity (чтобы не было ошибок компиляции) =====
   public void onHostResume() {
-    // если surface уже есть — просто запустим/продолжим цикл
-    startLoopIfPossible();
+    // если surface уже есть — просто перерисуем
+    requestRender();
+    resumeAi();
+    updateHint();
   }
 
   public void onHostPause() {
-    // аккуратно тормозим рендер (без крашей)
-    stopLoop();
+    // кадры сами не идут; снимаем только запланированный
+    cancelFrame();
+    ai.cancel();
   }
 
   // ===== Surface callbacks =====
   @Override public void surfaceCreated(SurfaceHolder holder) {
-    startLoopIfPossible();
+    surfaceReady = true;
+    removeCallbacks(reportFrames);
+    postDelayed(reportFrames, 60_000);
+    requestRender();
   }
 
   @Override public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
     W = Math.max(1, width);
     H = Math.max(1, height);
     layoutUI();
+    requestRender();
   }
 
   @Override public void surfaceDestroyed(SurfaceHolder holder) {
-    stopLoop();
+    surfaceReady = false;
+    cancelFrame();
+    removeCallbacks(reportFrames);
+    ai.cancel();
     stopNet();
+    invalidateLayer();
     try { sfx.release(); } catch (Throwable ignored) {}
     try { sprites.clear(); } catch (Throwable ignored) {}
   }
 
-  private synchronized void startLoopIfPossible() {
-    if (running) return;
-    running = true;
-    loopThread = new Thread(this::loop, "RenderLoop");
-    loopThread.start();
-  }
-
-  private synchronized void stopLoop() {
-    running = false;
-    if (loopThread != null) {
-      try { loopThread.join(400); } catch (InterruptedException ignored) {}
-      loopThread = null;
-    }
-  }
-
   // ===== UI layout =====
   private void layoutUI() {
     float pad = dp(18);
@@ -185,10 +222,17 @@ public class ShashkiView extends SurfaceView implements SurfaceHolder.Callback {
     btnUndo = new RectF(btnBack.right + dp(16), y, btnBack.right + dp(16) + bbtn, y + bbtn);
     btnReset = new RectF(btnUndo.right + dp(16), y, btnUndo.right + dp(16) + bbtn, y + bbtn);
     btnSound = new RectF(W - dp(16) - bbtn, y, W - dp(16), y + bbtn);
+    btnHint = new RectF(W - dp(16) - dp(84), dp(18), W - dp(16), dp(18) + dp(84));
+
+    setX = W * 0.10f;
+    setY = H * 0.28f;
+    setRow = Math.max(1f, Math.min(dp(90), (Math.min(H * 0.80f, btnBack.top - dp(8)) - setY) / SETTING_ROWS));
+    setRowH = setRow * 74f / 90f;
 
     float nbw = W * 0.62f, nbh = dp(110);
     btnHost = new RectF((W - nbw) / 2f, H * 0.50f, (W + nbw) / 2f, H * 0.50f + nbh);
     btnJoin = new RectF((W - nbw) / 2f, btnHost.bottom + pad, (W + nbw) / 2f, btnHost.bottom + pad + nbh);
+    invalidateLayer();
   }
 
   private float dp(float v) {
@@ -199,6 +243,7 @@ public class ShashkiView extends SurfaceView implements SurfaceHolder.Callback {
   // ===== Input =====
   @Override public boolean onTouchEvent(MotionEvent e) {
     if (e.getAction() != MotionEvent.ACTION_DOWN) return true;
+    requestRender(); // whatever the tap changes shows on the next frame
 
     float x = e.getX(), y = e.getY();
     safeTap();
@@ -223,28 +268,29 @@ public class ShashkiView extends SurfaceView implements SurfaceHolder.Callback {
 
       case SETTINGS:
         if (btnBack != null && btnBack.contains(x, y)) { screen = Screen.MENU; saveSettings(); return true; }
-        float sx = W * 0.08f, sy = H * 0.32f, row = dp(90);
-        if (rowHit(x, y, sx, sy, row, 0)) { toggleSound(); return true; }
-        if (rowHit(x, y, sx, sy, row, 1)) { cycleAiLevel(); return true; }
-        if (rowHit(x, y, sx, sy, row, 2)) { aiLearning = !aiLearning; ai.learningEnabled = aiLearning; return true; }
-        if (rowHit(x, y, sx, sy, row, 3)) { reduceMotion = !reduceMotion; return true; }
-        if (rowHit(x, y, sx, sy, row, 4)) { cycleLanguage(); return true; }
-        if (rowHit(x, y, sx, sy, row, 5)) { ai.resetLearning(); return true; }
+        if (rowHit(x, y, 0)) { toggleSound(); return true; }
+        if (rowHit(x, y, 1)) { cycleAiLevel(); return true; }
+        if (rowHit(x, y, 2)) { aiLearning = !aiLearning; ai.learningEnabled = aiLearning; return true; }
+        if (rowHit(x, y, 3)) { reduceMotion = !reduceMotion; return true; }
+        if (rowHit(x, y, 4)) { cycleLanguage(); return true; }
+        if (rowHit(x, y, 5)) { ai.resetLearning(); return true; }
+        if (rowHit(x, y, 6)) { cycleVariant(); return true; }
         break;
 
       case GAME:
-        if (btnBack != null && btnBack.contains(x, y)) { stopNet(); screen = Screen.MENU; return true; }
-        if (btnReset != null && btnReset.contains(x, y)) { resetGame(); if (link != null) link.sendLine(NetMessage.RESET); return true; }
-        if (btnUndo != null && btnUndo.contains(x, y)) { if (game.canUndo()) game.undo(); return true; }
+        if (btnBack != null && btnBack.contains(x, y)) { ai.cancel(); stopNet(); screen = Screen.MENU; return true; }
+        if (btnReset != null && btnReset.contains(x, y)) { resetGame(); updateHint(); if (link != null) link.sendLine(NetMessage.RESET); return true; }
+        if (btnUndo != null && btnUndo.contains(x, y)) { undo(); return true; }
         if (btnSound != null && btnSound.contains(x, y)) { toggleSound(); return true; }
+        if (btnHint != null && btnHint.contains(x, y)) { hintOn = !hintOn; saveSettings(); updateHint(); return true; }
         if (boardRect.contains(x, y)) { onBoardTap(x, y); return true; }
         break;
     }
     return true;
   }
 
-  private boolean rowHit(float x, float y, float sx, float sy, float row, float idx) {
-    tmp.set(sx, sy + row * idx, W - sx, sy + row * idx + dp(74));
+  private boolean rowHit(float x, float y, int idx) {
+    tmp.set(setX, setY + setRow * idx, W - setX, setY + setRow * idx + setRowH);
     return tmp.contains(x, y);
   }
 
@@ -254,7 +300,11 @@ public class ShashkiView extends SurfaceView implements SurfaceHolder.Callback {
   private void safeWin() { try { sfx.win(); } catch (Throwable ignored) {} }
   private void safeError() { try { sfx.error(); } catch (Throwable ignored) {} }
 
-  private void toggleSound() { soundOn = !soundOn; try { sfx.setEnabled(soundOn); } catch (Throwable ignored) {} }
+  private void toggleSound() {
+    soundOn = !soundOn;
+    invalidateLayer(); // the sound button is in it
+    try { sfx.setEnabled(soundOn); } catch (Throwable ignored) {}
+  }
 
   private void cycleAiLevel() {
     if (aiLevel == AiPlayer.Level.EASY) aiLevel = AiPlayer.Level.NORMAL;
@@ -265,6 +315,49 @@ public class ShashkiView extends SurfaceView implements SurfaceHolder.Callback {
 
   private void cycleLanguage() { languageMode = (languageMode + 1) % 4; }
 
+  private void cycleVariant() {
+    variant = (variant + 1) % 5;
+    loadVariant();
+    ai.clearTable(); // scores of the old rules
+    layoutUI();      // cell size follows the board
+  }
+
+  private static Rules variantRules(int v) {
+    switch (v) {
+      case 1: return Rules.brazilian();
+      case 2: return Rules.pool();
+      case 3: return Rules.english();
+      case 4: return Rules.international();
+      default: return Rules.russian();
+    }
+  }
+
+  private String variantName() {
+    switch (variant) {
+      case 1: return tr("Бразильские", "Бразильські", "Brazilian");
+      case 2: return tr("Пул", "Пул", "Pool");
+      case 3: return tr("Английские", "Англійські", "English");
+      case 4: return tr("Международные 10×10", "Міжнародні 10×10", "International 10×10");
+      default: return tr("Русские", "Російські", "Russian");
+    }
+  }
+
+  // a new board for the variant, and the engine files that were built for its rules
+  private void loadVariant() {
+    ai.cancel();
+    hint = null;
+    selMoves.clear();
+    game = new GameState(variantRules(variant));
+    ai.tablebase = null;
+    ai.book = null;
+    ai.network = null;
+    // endgame tables and opening book, if any were put into files/
+    try { ai.tablebase = Tablebase.open(new File(ctx.getFilesDir(), "tb"), game.rules); } catch (IOException ignored) {}
+    try { ai.book = OpeningBook.open(new File(ctx.getFilesDir(), "opening.book"), game.rules); } catch (IOException ignored) {}
+    // evaluation network from assets; without one (or one for other rules) the learned weights play
+    try (InputStream in = ctx.getAssets().open("nnue.bin")) { ai.network = Nnue.read(in, game.rules); } catch (IOException ignored) {}
+  }
+
   private void saveSettings() {
     int lvl = (aiLevel == AiPlayer.Level.EASY) ? 0 : (aiLevel == AiPlayer.Level.HARD ? 2 : 1);
     prefs.edit()
@@ -272,6 +365,8 @@ public class ShashkiView extends SurfaceView implements SurfaceHolder.Callback {
       .putBoolean("reduceMotion", reduceMotion)
       .putInt("aiLevel", lvl)
       .putBoolean("aiLearning", aiLearning)
+      .putBoolean("hints", hintOn)
+      .putInt("variant", variant)
       .putInt("lang", languageMode)
       .putString("lastJoinIp", lastJoinIp)
       .apply();
@@ -296,20 +391,32 @@ public class ShashkiView extends SurfaceView implements SurfaceHolder.Callback {
     playerIsWhite = true;
     resetGame();
     screen = Screen.GAME;
+    updateHint();
   }
 
   private void startHotseat() {
     mode = Mode.HOTSEAT;
     resetGame();
     screen = Screen.GAME;
+    updateHint();
   }
 
   private void resetGame() {
+    ai.cancel();
     game.reset();
     game.clearSelection();
     selMoves.clear();
   }
 
+  // against the AI, back to the player's turn: the AI's reply and the player's move
+  private void undo() {
+    ai.cancel();
+    if (game.canUndo()) game.undo();
+    while (mode == Mode.AI && game.whiteTurn != playerIsWhite && game.canUndo()) game.undo();
+    resumeAi();
+    updateHint();
+  }
+
   private void onBoardTap(float sx, float sy) {
     // turn gating
     if (mode == Mode.AI) {
@@ -363,29 +470,55 @@ public class ShashkiView extends SurfaceView implements SurfaceHolder.Callback {
       return;
     }
 
-    if (mode == Mode.AI) {
-      boolean aiTurn = (playerIsWhite != game.whiteTurn);
-      if (aiTurn) scheduleAiMove();
-    }
+    // after every hop, also the ones a capture chain goes on from
+    if (mode == Mode.AI && playerIsWhite != game.whiteTurn) scheduleAiMove();
+    else updateHint();
   }
 
+  // the engine searches a snapshot; a reply that arrives after the position changed
+  // (undo, reset, back) is stale and dropped
   private void scheduleAiMove() {
-    new Thread(() -> {
-      SystemClock.sleep(reduceMotion ? 200 : 90);
-      Move m = ai.pickMove(game);
-      if (m == null) return;
-      post(() -> {
-        boolean cap = m.captureCount() > 0;
-        if (game.applyMove(m)) {
-          if (cap) safeCapture(); else safeMove();
-          if (game.isGameOver()) {
-            int w = game.winner();
-            ai.learnFromResult(w);
-            safeWin();
-          }
+    long due = SystemClock.uptimeMillis() + (reduceMotion ? 200 : 90);
+    ai.requestMove(game, (m, version) -> postDelayed(() -> {
+      if (m == null || game.version != version || mode != Mode.AI || screen != Screen.GAME) return;
+      boolean cap = m.captureCount() > 0;
+      if (game.applyMove(m)) {
+        if (cap) safeCapture(); else safeMove();
+        requestRender();
+        if (game.isGameOver()) {
+          int w = game.winner();
+          ai.learnFromResult(w);
+          safeWin();
+        } else {
+          updateHint();
         }
-      });
-    }, "AI").start();
+      }
+    }, Math.max(0, due - SystemClock.uptimeMillis())));
+  }
+
+  // with hints on, every move of a local player's position is scored in the background;
+  // off, the engine ponders on the player's turn against the AI instead
+  private void updateHint() {
+    hint = null;
+    if (!hintTurn()) return;
+    GameState g = game;
+    if (hintOn) ai.analyze(g, Integer.MAX_VALUE, (lines, depth, version) -> {
+      hint = new Hint(g, version, depth, lines);
+      post(this::requestRender);
+    });
+    else if (mode == Mode.AI) ai.startPondering(g);
+    else ai.cancel();
+  }
+
+  private boolean hintTurn() {
+    if (screen != Screen.GAME || game.isGameOver()) return false;
+    if (mode == Mode.AI) return game.whiteTurn == playerIsWhite;
+    return mode == Mode.HOTSEAT;
+  }
+
+  // a search cancelled by pause or undo while the AI was to move is started again
+  private void resumeAi() {
+    if (mode == Mode.AI && screen == Screen.GAME && game.whiteTurn != playerIsWhite && !game.isGameOver()) scheduleAiMove();
   }
 
   // ===== LAN =====
@@ -400,16 +533,16 @@ public class ShashkiView extends SurfaceView implements SurfaceHolder.Callback {
         try {
           link = new LanLink(socket, new LanLink.Listener() {
             @Override public void onLine(String line) { onNetLine(line); }
-            @Override public void onClosed(String reason) { post(ShashkiView.this::stopNet); }
+            @Override public void onClosed(String reason) { postRender(ShashkiView.this::stopNet); }
           });
-          post(() -> { screen = Screen.GAME; sendState(); });
+          postRender(() -> { screen = Screen.GAME; sendState(); });
         } catch (Exception e) {
-          post(() -> { stopNet(); screen = Screen.NET_MENU; });
+          postRender(() -> { stopNet(); screen = Screen.NET_MENU; });
         }
       }
 
       @Override public void onError(String err) {
-        post(() -> { stopNet(); screen = Screen.NET_MENU; });
+        postRender(() -> { stopNet(); screen = Screen.NET_MENU; });
       }
     });
   }
@@ -428,6 +561,7 @@ public class ShashkiView extends SurfaceView implements SurfaceHolder.Callback {
           lastJoinIp = input.getText().toString().trim();
           saveSettings();
           startLanJoin(lastJoinIp);
+          requestRender();
         })
         .setNegativeButton(tr("Отмена", "Скасувати", "Cancel"), null)
         .show();
@@ -445,16 +579,16 @@ public class ShashkiView extends SurfaceView implements SurfaceHolder.Callback {
         try {
           link = new LanLink(socket, new LanLink.Listener() {
             @Override public void onLine(String line) { onNetLine(line); }
-            @Override public void onClosed(String reason) { post(ShashkiView.this::stopNet); }
+            @Override public void onClosed(String reason) { postRender(ShashkiView.this::stopNet); }
           });
-          post(() -> { screen = Screen.GAME; if (link != null) link.sendLine(NetMessage.HELLO); });
+          postRender(() -> { screen = Screen.GAME; if (link != null) link.sendLine(NetMessage.HELLO); });
         } catch (Exception e) {
-          post(() -> { stopNet(); screen = Screen.NET_MENU; });
+          postRender(() -> { stopNet(); screen = Screen.NET_MENU; });
         }
       }
 
       @Override public void onError(String err) {
-        post(() -> { stopNet(); screen = Screen.NET_MENU; });
+        postRender(() -> { stopNet(); screen = Screen.NET_MENU; });
       }
     });
   }
@@ -469,13 +603,14 @@ public class ShashkiView extends SurfaceView implements SurfaceHolder.Callback {
 
       boolean wt = "1".equals(parts[0]);
       String[] nums = parts[1].split(",");
+      if (nums.length != game.N * game.N) return; // the other side plays another board
 
       int[] data = new int[game.N * game.N];
       for (int i = 0; i < data.length && i < nums.length; i++) {
         try { data[i] = Integer.parseInt(nums[i]); }
         catch (Exception ignored) { data[i] = 0; }
       }
-      post(() -> game.importBoard(data, wt));
+      postRender(() -> game.importBoard(data, wt));
       return;
     }
 
@@ -487,7 +622,7 @@ public class ShashkiView extends SurfaceView implements SurfaceHolder.Callback {
         int fx = Integer.parseInt(a[1]), fy = Integer.parseInt(a[2]),
             tx = Integer.parseInt(a[3]), ty = Integer.parseInt(a[4]);
 
-        post(() -> {
+        postRender(() -> {
           Move m = new Move(fx, fy, tx, ty);
           boolean ok = game.applyMove(m);
           if (ok) safeMove(); else safeError();
@@ -498,7 +633,7 @@ public class ShashkiView extends SurfaceView implements SurfaceHolder.Callback {
     }
 
     if (line.startsWith(NetMessage.RESET)) {
-      post(this::resetGame);
+      postRender(this::resetGame);
     }
   }
 
@@ -527,35 +662,53 @@ sb.append(NetMessage.STATE).append(" ").append(game.whiteTurn ? "1" : "0").appen
     try { host.stop(); } catch (Throwable ignored) {}
   }
 
-  // ===== Render loop =====
-  private void loop() {
-    long last = SystemClock.uptimeMillis();
-    while (running) {
-      long now = SystemClock.uptimeMillis();
-      if (now - last < 16) { SystemClock.sleep(1); continue; }
-      last = now;
+  // ===== Rendering =====
+  // marks the frame dirty and asks for the next vsync; UI thread only, others post() it.
+  // An animation would call it again from its own frame until it is done.
+  private void requestRender() {
+    dirty = true;
+    if (!surfaceReady || frameScheduled) return;
+    frameScheduled = true;
+    choreographer.postFrameCallback(frame);
+  }
 
-      Canvas c = null;
-      try {
-        c = holder.lockCanvas();
-        if (c == null) continue;
-        render(c);
-      } catch (Throwable ignored) {
-        // не даём упасть приложению из-за одного кадра
-      } finally {
-        if (c != null) holder.unlockCanvasAndPost(c);
-      }
+  private void cancelFrame() {
+    if (frameScheduled) choreographer.removeFrameCallback(frame);
+    frameScheduled = false;
+  }
+
+  // runs a state change from another thread on the UI thread, then redraws
+  private void postRender(Runnable r) {
+    post(() -> { r.run(); requestRender(); });
+  }
+
+  private void doFrame(long frameTimeNanos) {
+    frameScheduled = false;
+    if (!surfaceReady || !dirty) return;
+    dirty = false;
+    Canvas c = null;
+    try {
+      c = holder.lockCanvas();
+      if (c == null) return;
+      render(c);
+      frames++;
+    } catch (Throwable ignored) {
+      // не даём упасть приложению из-за одного кадра
+    } finally {
+      if (c != null) holder.unlockCanvasAndPost(c);
     }
   }
 
+  // frames rendered in the last minute, to check that an idle screen costs nothing
+  private void reportFrames() {
+    Log.i("Shashki", "frames/min " + frames);
+    frames = 0;
+    postDelayed(reportFrames, 60_000);
+  }
+
   private void render(Canvas c) {
-    // background (cover)
-    Bitmap bg = sprites.get("sprites/bg/bg_game.png");
-    if (bg != null) {
-      drawCover(c, bg, new RectF(0, 0, W, H));
-    } else {
-      c.drawARGB(255, 10, 10, 12);
-    }
+    // the game screen's layer already has the background
+    if (screen != Screen.GAME) drawBackground(c);
 
     switch (screen) {
       case MENU:      drawMenu(c); break;
@@ -613,36 +766,54 @@ sb.append(NetMessage.STATE).append(" ").append(game.whiteTurn ? "1" : "0").appen
     drawIconButton(c, btnBack, sprites.get("sprites/ui/buttons/btn_back.png"));
     drawTitle(c, tr("Настройки", "Налаштування", "Settings"), H * 0.18f);
 
-    float sx = W * 0.10f, sy = H * 0.28f, row = dp(90);
-
-    drawSettingRow(c, sx, sy + row * 0,
+    drawSettingRow(c, 0,
       tr("Звук", "Звук", "Sound"),
       soundOn ? tr("Вкл", "Увімк", "On") : tr("Выкл", "Вимк", "Off"));
 
-    drawSettingRow(c, sx, sy + row * 1,
+    drawSettingRow(c, 1,
       tr("Сложность ИИ", "Складність AI", "AI level"),
       aiLevel == AiPlayer.Level.EASY ? tr("Лёгкая", "Легка", "Easy") :
         (aiLevel == AiPlayer.Level.HARD ? tr("Сложная", "Складна", "Hard") : tr("Нормальная", "Нормальна", "Normal")));
 
-    drawSettingRow(c, sx, sy + row * 2,
+    drawSettingRow(c, 2,
       tr("Обучение ИИ", "Навчання AI", "AI learning"),
       aiLearning ? tr("Вкл", "Увімк", "On") : tr("Выкл", "Вимк", "Off"));
 
-    drawSettingRow(c, sx, sy + row * 3,
+    drawSettingRow(c, 3,
       tr("Меньше анимаций", "Менше анімацій", "Reduce motion"),
       reduceMotion ? tr("Да", "Так", "Yes") : tr("Нет", "Ні", "No"));
 
-    drawSettingRow(c, sx, sy + row * 4,
+    drawSettingRow(c, 4,
       tr("Язык", "Мова", "Language"),
       languageMode == 0 ? tr("Система", "Система", "System") :
         (languageMode == 1 ? "Русский" : (languageMode == 2 ? "Українська" : "English")));
 
-    drawSettingRow(c, sx, sy + row * 5,
+    drawSettingRow(c, 5,
       tr("Сбросить обучение", "Скинути навчання", "Reset learning"),
       tr("Нажми", "Натисни", "Tap"));
+
+    drawSettingRow(c, 6,
+      tr("Правила", "Правила", "Rules"),
+      variantName());
   }
 
-  private void drawGame(Canvas c) {
+  private void drawBackground(Canvas c) {
+    // background (cover)
+    Bitmap bg = sprites.get("sprites/bg/bg_game.png");
+    if (bg != null) {
+      drawCover(c, bg, new RectF(0, 0, W, H));
+    } else {
+      c.drawARGB(255, 10, 10, 12);
+    }
+  }
+
+  // background, panels, underlay, tiles, frame and buttons in one bitmap the size of the
+  // view; rebuilt after layoutUI (size, board) or a setting it shows (sound) changes
+  private Bitmap gameLayer() {
+    if (gameLayer != null) return gameLayer;
+    gameLayer = Bitmap.createBitmap(W, H, Bitmap.Config.ARGB_8888);
+    Canvas c = new Canvas(gameLayer);
+    drawBackground(c);
     draw9(c, sprites.get("sprites/ui/panels/panel_top.png"), new RectF(0, 0, W, dp(120)));
 
     // board underlay (opaque, чтобы не было видно фона за доской)
@@ -650,7 +821,7 @@ sb.append(NetMessage.STATE).append(" ").append(game.whiteTurn ? "1" : "0").appen
       boardRect.right + dp(18), boardRect.bottom + dp(18));
     draw9(c, sprites.get("sprites/board/board_underlay.png"), under);
 
-    drawBoard(c);
+    drawTiles(c);
 
     RectF frame = new RectF(boardRect.left - dp(12), boardRect.top - dp(12),
       boardRect.right + dp(12), boardRect.bottom + dp(12));
@@ -664,6 +835,18 @@ sb.append(NetMessage.STATE).append(" ").append(game.whiteTurn ? "1" : "0").appen
     drawIconButton(c, btnSound, soundOn ?
       sprites.get("sprites/ui/buttons/btn_sound_on.png") :
       sprites.get("sprites/ui/buttons/btn_sound_off.png"));
+    drawIconButton(c, btnHint, null);
+    return gameLayer;
+  }
+
+  private void invalidateLayer() {
+    if (gameLayer != null) gameLayer.recycle();
+    gameLayer = null;
+  }
+
+  private void drawGame(Canvas c) {
+    c.drawBitmap(gameLayer(), 0, 0, null);
+    drawBoard(c);
 
     paint.setColor(0xFFFFFFFF);
     paint.setTextAlign(Paint.Align.LEFT);
@@ -681,6 +864,22 @@ sb.append(NetMessage.STATE).append(" ").append(game.whiteTurn ? "1" : "0").appen
 
     c.drawText(modeTxt, dp(22), dp(112), paint);
 
+    paint.setColor(hintOn ? 0xFFFFFFFF : 0x80FFFFFF);
+    paint.setTextAlign(Paint.Align.CENTER);
+    paint.setTextSize(dp(44));
+    c.drawText("?", btnHint.centerX(), btnHint.centerY() + dp(15), paint);
+
+    Hint h = hint;
+    if (hintOn && h != null && h.of(game) && !h.lines.isEmpty()) {
+      int sc = h.lines.get(0).score;
+      String eval = Math.abs(sc) > Search.WIN - 1000 ? (sc > 0 ? tr("выигрыш", "виграш", "win") : tr("проигрыш", "програш", "loss"))
+        : String.format(Locale.ROOT, "%+.1f", sc / 1000f);
+      paint.setColor(0xFFFFFFFF);
+      paint.setTextAlign(Paint.Align.RIGHT);
+      paint.setTextSize(dp(26));
+      c.drawText(eval + "  " + tr("глубина ", "глибина ", "depth ") + h.depth, btnHint.left - dp(12), dp(112), paint);
+    }
+
     if (game.isGameOver()) {
       int w = game.winner();
       String win =
@@ -696,12 +895,9 @@ sb.append(NetMessage.STATE).append(" ").append(game.whiteTurn ? "1" : "0").appen
     }
   }
 
-  private void drawBoard(Canvas c) {
+  private void drawTiles(Canvas c) {
     Bitmap tileDark = sprites.get("sprites/board/tile_dark.png");
     Bitmap tileLight = sprites.get("sprites/board/tile_light.png");
-    Bitmap hlMove = sprites.get("sprites/effects/hl_move.png");
-    Bitmap hlCap  = sprites.get("sprites/effects/hl_capture.png");
-    Bitmap hlSel  = sprites.get("sprites/effects/hl_selected.png");
 
     for (int yy = 0; yy < game.N; yy++) {
       for (int xx = 0; xx < game.N; xx++) {
@@ -719,19 +915,34 @@ sb.append(NetMessage.STATE).append(" ").append(game.whiteTurn ? "1" : "0").appen
           if (tileLight != null) c.drawBitmap(tileLight, null, tmp, null);
           else c.drawARGB(255, 70, 70, 80);
         }
+      }
+    }
+  }
 
-        if (!dark) continue;
+  // what changes with the position on top of the layer: highlights and pieces
+  private void drawBoard(Canvas c) {
+    Bitmap hlMove = sprites.get("sprites/effects/hl_move.png");
+    Bitmap hlCap  = sprites.get("sprites/effects/hl_capture.png");
+    Bitmap hlSel  = sprites.get("sprites/effects/hl_selected.png");
 
-        if (game.selX == xx && game.selY == yy && hlSel != null) c.drawBitmap(hlSel, null, tmp, null);
+    if (game.selX >= 0) {
+      if (hlSel != null) c.drawBitmap(hlSel, null, cellRect(game.selX, game.selY), null);
+      if (selMoves != null) for (Move m : selMoves) {
+        Bitmap h = (m.captureCount() > 0) ? hlCap : hlMove;
+        if (h != null) c.drawBitmap(h, null, cellRect(m.tx, m.ty), null);
+      }
+    }
 
-        if (game.selX >= 0 && selMoves != null) {
-          for (Move m : selMoves) {
-            if (m.tx == xx && m.ty == yy) {
-              Bitmap h = (m.captureCount() > 0) ? hlCap : hlMove;
-              if (h != null) c.drawBitmap(h, null, tmp, null);
-            }
-          }
-        }
+    // hints: from and to squares of the best moves, fainter further down the list
+    Hint h = hint;
+    if (hintOn && h != null && h.of(game)) {
+      for (int i = Math.min(HINT_SHOWN, h.lines.size()) - 1; i >= 0; i--) {
+        Move m = h.lines.get(i).move;
+        Bitmap hl = (m.captureCount() > 0) ? hlCap : hlMove;
+        if (hl == null) continue;
+        hintPaint.setAlpha(255 >> i);
+        c.drawBitmap(hl, null, cellRect(m.fx, m.fy), hintPaint);
+        c.drawBitmap(hl, null, cellRect(m.tx, m.ty), hintPaint);
       }
     }
 
@@ -767,6 +978,12 @@ sb.append(NetMessage.STATE).append(" ").append(game.whiteTurn ? "1" : "0").appen
     }
   }
 
+  // the square (x, y) on screen, in tmp
+  private RectF cellRect(int x, int y) {
+    tmp.set(boardRect.left + x * cell, boardRect.top + y * cell, boardRect.left + (x + 1) * cell, boardRect.top + (y + 1) * cell);
+    return tmp;
+  }
+
   // ===== Widgets =====
   private void drawTitle(Canvas c, String title, float y) {
     paint.setColor(0xFFFFFFFF);
@@ -812,8 +1029,9 @@ sb.append(NetMessage.STATE).append(" ").append(game.whiteTurn ? "1" : "0").appen
     }
   }
 
-  private void drawSettingRow(Canvas c, float x, float y, String name, String value) {
-    RectF rr = new RectF(x, y, W - x, y + dp(74));
+  private void drawSettingRow(Canvas c, int idx, String name, String value) {
+    float x = setX, y = setY + setRow * idx, h = setRowH;
+    RectF rr = new RectF(x, y, W - x, y + h);
     Bitmap bar = sprites.get("sprites/ui/panels/setting_row.png");
 
     if (bar != null) c.drawBitmap(bar, null, rr, null);
@@ -824,11 +1042,11 @@ sb.append(NetMessage.STATE).append(" ").append(game.whiteTurn ? "1" : "0").appen
 
     paint.setColor(0xFFFFFFFF);
     paint.setTextAlign(Paint.Align.LEFT);
-    paint.setTextSize(dp(34));
-    c.drawText(name, x + dp(20), y + dp(50), paint);
+    paint.setTextSize(h * 34f / 74f);
+    c.drawText(name, x + dp(20), y + h * 50f / 74f, paint);
 
     paint.setTextAlign(Paint.Align.RIGHT);
-    c.drawText(value, W - x - dp(20), y + dp(50), paint);
+    c.drawText(value, W - x - dp(20), y + h * 50f / 74f, paint);
   }
 
   // draw bitmap covering rect with crop (CSS cover)
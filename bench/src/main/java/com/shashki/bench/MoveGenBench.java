@@ -0,0 +1,98 @@
+package com.shashki.bench;
+
+import com.shashki.GameState;
+import com.shashki.Move;
+import com.shashki.engine.Evaluator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Move generation, move application and evaluation on the fixed positions. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveGenBench {
+  @Param({"opening", "middlegame", "endgame"})
+  public String position;
+
+  private GameState s;
+  private Move move;
+  private int[] board;
+  private final Evaluator eval = new Evaluator();
+
+  @Setup
+  public void setup() {
+    s = Positions.load(position);
+    List<Move> moves = s.legalSequences();
+    move = moves.get(0);
+    board = s.exportBoard();
+  }
+
+  // cached per position version after the first call, as the UI sees it
+  @Benchmark
+  public List<Move> legalMoves() {
+    return s.legalMoves();
+  }
+
+  // rehash() moves the version on, so this one generates every time
+  @Benchmark
+  public List<Move> legalMovesFresh() {
+    s.rehash();
+    return s.legalMoves();
+  }
+
+  @Benchmark
+  public List<Move> legalSequences() {
+    return s.legalSequences();
+  }
+
+  // what the search generates: packed moves into a reused buffer
+  @Benchmark
+  public int legalPacked() {
+    return s.legalPacked();
+  }
+
+  // applyMove checks the move against the legal list; undo restores the snapshot
+  @Benchmark
+  public boolean applyMoveUndo() {
+    boolean ok = s.applyMove(move);
+    s.undo();
+    return ok;
+  }
+
+  // what the search does instead of applyMove/undo
+  @Benchmark
+  public long makeUnmake() {
+    s.make(move);
+    long k = s.key;
+    s.unmake(move);
+    return k;
+  }
+
+  @Benchmark
+  public int[] exportImport() {
+    int[] b = s.exportBoard();
+    s.importBoard(board, true);
+    return b;
+  }
+
+  @Benchmark
+  public int evaluate() {
+    return eval.evaluate(s);
+  }
+}
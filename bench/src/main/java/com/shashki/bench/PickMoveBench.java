@@ -0,0 +1,67 @@
+package com.shashki.bench;
+
+import com.shashki.AiPlayer;
+import com.shashki.GameState;
+import com.shashki.Move;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One AI move per invocation, as the app asks for it, always searched: the level's share
+ * of random moves is turned off. One player (and engine thread) per trial; its table is
+ * cleared per iteration, so it warms up within an iteration only, like in a game.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 4)
+@Fork(1)
+public class PickMoveBench {
+  @Param({"EASY", "NORMAL", "HARD"})
+  public String level;
+
+  @Param({"opening", "middlegame", "endgame"})
+  public String position;
+
+  private AiPlayer ai;
+  private GameState s;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    ai = new AiPlayer();
+    ai.level = AiPlayer.Level.valueOf(level);
+    ai.learningEnabled = false;
+    ai.randomMoveRate = 0;
+    s = Positions.load(position);
+  }
+
+  @Setup(Level.Iteration)
+  public void clearTable() {
+    ai.clearTable();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    ai.shutdown();
+  }
+
+  @Benchmark
+  public Move pickMove() {
+    return ai.pickMove(s);
+  }
+}
@@ -0,0 +1,75 @@
+package com.shashki.bench;
+
+import com.shashki.GameState;
+import com.shashki.Piece;
+import com.shashki.Rules;
+
+/**
+ * Fixed positions for the benchmarks, drawn from white's side: w/b men, W/B kings,
+ * '.' for a dark square that's empty, anything else for a light square.
+ */
+final class Positions {
+  static final String OPENING =
+    " b b b b" +
+    "b b b b " +
+    " b . b b" +
+    ". b . . " +
+    " . w . ." +
+    "w . w w " +
+    " w w w w" +
+    "w w w w ";
+
+  static final String MIDDLEGAME =
+    " b . b b" +
+    "b . b . " +
+    " . b . b" +
+    "b . b w " +
+    " w . w ." +
+    ". w . w " +
+    " w . w w" +
+    "w . . . ";
+
+  // flying kings on open diagonals: long king moves and long-range captures
+  static final String ENDGAME =
+    " . . . ." +
+    ". . B . " +
+    " . . . b" +
+    ". . . . " +
+    " W . . ." +
+    ". . b . " +
+    " . . W ." +
+    "w . . . ";
+
+  private Positions() {}
+
+  static String named(String name) {
+    switch (name) {
+      case "opening": return OPENING;
+      case "middlegame": return MIDDLEGAME;
+      case "endgame": return ENDGAME;
+      default: throw new IllegalArgumentException(name);
+    }
+  }
+
+  static int[] board(String diagram) {
+    int[] b = new int[64];
+    for (int i = 0; i < 64; i++) {
+      Piece p;
+      switch (diagram.charAt(i)) {
+        case 'w': p = Piece.W_MAN; break;
+        case 'W': p = Piece.W_KING; break;
+        case 'b': p = Piece.B_MAN; break;
+        case 'B': p = Piece.B_KING; break;
+        default:  p = Piece.EMPTY; break;
+      }
+      b[i] = p.ordinal();
+    }
+    return b;
+  }
+
+  static GameState load(String name) {
+    GameState s = new GameState(Rules.russian());
+    s.importBoard(board(named(name)), true);
+    return s;
+  }
+}
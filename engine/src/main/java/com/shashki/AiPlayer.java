@@ -0,0 +1,325 @@
+package com.shashki;
+
+import com.shashki.engine.Evaluator;
+import com.shashki.engine.Nnue;
+import com.shashki.engine.OpeningBook;
+import com.shashki.engine.Search;
+import com.shashki.engine.SearchPool;
+import com.shashki.engine.Tablebase;
+import com.shashki.engine.TranspositionTable;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class AiPlayer {
+  public enum Level { EASY, NORMAL, HARD }
+  public Level level = Level.NORMAL;
+  public boolean learningEnabled = true;
+
+  public int hashMegabytes = 8; // transposition table budget, kept between moves
+  public long moveTimeMs = 0;    // think time per move, 0 = level default
+  public float randomMoveRate = -1; // chance of a random move instead of a search, negative = level default
+  public int threads = 1;        // search threads sharing the table; 1 is deterministic
+  public Tablebase tablebase;    // endgame tables, null if none are installed
+  public OpeningBook book;       // consulted before searching, null for none
+  public Nnue network;           // evaluates instead of the learned weights, null for none
+  public boolean ponder;         // on HARD, search on during the opponent's turn (see startPondering)
+  public long analysisMs = 10_000; // how long analyze() keeps deepening
+  public long analysisIntervalMs = 150; // least time between two analysis updates
+
+  /** Where learned weights are kept between sessions (SharedPreferences on Android). */
+  public interface Store {
+    float getFloat(String key, float def);
+    void putFloat(String key, float value);
+    void clear();
+  }
+
+  /** Keeps weights for the lifetime of the process only. */
+  public static class MemoryStore implements Store {
+    private final Map<String, Float> map = new HashMap<>();
+    @Override public float getFloat(String key, float def) { Float v = map.get(key); return v != null ? v : def; }
+    @Override public void putFloat(String key, float value) { map.put(key, value); }
+    @Override public void clear() { map.clear(); }
+  }
+
+  private final Random rng = new Random();
+  private final Store prefs;
+  private final Evaluator eval = new Evaluator();
+  private TranspositionTable tt;
+  private SearchPool pool;
+
+  // simple weights
+  private float wMan, wKing, wMob;
+
+  // stats of the last search
+  public volatile SearchPool.Result lastResult;
+
+  /** Receives the result of {@link #requestMove} on the engine thread. */
+  public interface MoveListener {
+    /** {@code m} is null when there is no legal move; {@code version} is the position's at the request. */
+    void onMove(Move m, int version);
+  }
+
+  /** Receives progressively deeper lines from {@link #analyze} on the engine thread. */
+  public interface AnalysisListener {
+    /** Best lines first, scores in thousandths of a man for the side to move at {@code version}. */
+    void onLines(List<Search.Line> lines, int depth, int version);
+  }
+
+  // every search runs on one engine thread, on its own copy of the position
+  private ExecutorService worker;
+  private volatile Search.Clock running; // clock of the queued or running task
+  private volatile long ponderHit;       // key of the position after the reply the last ponder expected
+
+  public AiPlayer() { this(new MemoryStore()); }
+
+  public AiPlayer(Store store) {
+    prefs = store;
+    wMan  = prefs.getFloat("wMan", 1.0f);
+    wKing = prefs.getFloat("wKing", 3.0f);
+    wMob  = prefs.getFloat("wMob", 0.08f);
+  }
+
+  public void resetLearning() {
+    wMan=1.0f; wKing=3.0f; wMob=0.08f;
+    clearTable();
+    prefs.clear();
+  }
+
+  /**
+   * Picks a move for {@code s} in the background: stops whatever the engine is doing,
+   * snapshots {@code s} on the calling thread and searches the copy. The listener is not
+   * called if the request is cancelled; the caller still has to drop a result whose
+   * version no longer matches its position.
+   */
+  public synchronized void requestMove(GameState s, MoveListener listener) {
+    cancel();
+    GameState snapshot = new GameState(s);
+    int version = s.version;
+    Search.Clock clock = new Search.Clock();
+    running = clock;
+    worker().execute(() -> {
+      if (running != clock) return;
+      Move m = pick(snapshot, clock);
+      // the search sets stop itself when it ends; a cancelled request is no longer running
+      if (running == clock) listener.onMove(m, version);
+    });
+  }
+
+  /**
+   * Starts searching {@code s}, where the opponent is to move, in the background until
+   * {@link #cancel} or the next request. The results stay in the shared table, and if
+   * the opponent then plays the move this search settled on, the reply takes a quarter
+   * of the usual time. Only on HARD: the other levels stop after a few plies anyway.
+   */
+  public synchronized void startPondering(GameState s) {
+    cancel();
+    ponderHit = 0;
+    if (!ponder || level != Level.HARD) return;
+    GameState root = new GameState(s);
+    Search.Clock clock = new Search.Clock();
+    running = clock;
+    worker().execute(() -> {
+      List<Move> moves = root.legalSequences();
+      if (running != clock || moves.isEmpty()) return;
+      prepare();
+      tt.newSearch();
+      SearchPool.Result r = pool.search(root, moves, tt, eval, Search.MAX_DEPTH, 0, clock);
+      root.make(r.best);
+      ponderHit = root.key;
+    });
+  }
+
+  /**
+   * Scores the best {@code lines} moves of {@code s} (every move, if there are fewer) in
+   * the background and streams them as each iteration completes, for hints and analysis.
+   * It is one search with a multi-PV root, running until {@link #analysisMs}, a forced
+   * result, {@link #cancel} or the next request. Updates come at most every
+   * {@link #analysisIntervalMs}; the last one is always delivered unless cancelled, and
+   * none is once {@link #cancel} or the next request has returned.
+   */
+  public synchronized void analyze(GameState s, int lines, AnalysisListener listener) {
+    cancel();
+    ponderHit = 0;
+    GameState root = new GameState(s);
+    int version = s.version;
+    Search.Clock clock = new Search.Clock();
+    running = clock;
+    worker().execute(() -> {
+      List<Move> moves = root.legalSequences();
+      if (running != clock || moves.isEmpty()) return;
+      prepare();
+      Stream out = new Stream(listener, version, clock);
+      pool.multiPv = lines;
+      pool.listener = out;
+      tt.newSearch();
+      pool.search(root, moves, tt, eval, Search.MAX_DEPTH, analysisMs, clock);
+      out.flush();
+    });
+  }
+
+  // passes on analysis updates no more often than analysisIntervalMs, holding back the latest
+  private final class Stream implements SearchPool.Listener {
+    private final AnalysisListener out;
+    private final int version;
+    private final Search.Clock clock;
+    private long last;
+    private List<Search.Line> held;
+    private int heldDepth;
+
+    Stream(AnalysisListener out, int version, Search.Clock clock) {
+      this.out = out;
+      this.version = version;
+      this.clock = clock;
+    }
+
+    @Override public void iteration(int depth, long nodes, long nanos, List<Search.Line> lines) {
+      held = lines;
+      heldDepth = depth;
+      if (System.nanoTime() - last >= analysisIntervalMs * 1_000_000L) flush();
+    }
+
+    // under the player's lock, so a cancel can't slip in between the check and the delivery
+    void flush() {
+      synchronized (AiPlayer.this) {
+        if (held == null || running != clock) return;
+        out.onLines(held, heldDepth, version);
+      }
+      held = null;
+      last = System.nanoTime();
+    }
+  }
+
+  /** Stops the running search or ponder without waiting for it; its result is dropped. */
+  public synchronized void cancel() {
+    Search.Clock c = running;
+    if (c != null) c.stop = true;
+    running = null;
+  }
+
+  /** Picks a move for {@code s} on the calling thread, once the engine thread is idle. */
+  public Move pickMove(GameState s) {
+    cancel();
+    idle();
+    return pick(s, new Search.Clock());
+  }
+
+  private Move pick(GameState s, Search.Clock clock) {
+    boolean hit = ponderHit != 0 && s.key == ponderHit;
+    ponderHit = 0;
+    List<Move> moves = s.legalSequences();
+    if (moves.isEmpty()) return null;
+    // forced reply (e.g. the only capture): nothing to think about
+    if (moves.size() == 1) return moves.get(0).copy();
+    // book moves vary by weight, no need for a random move on top
+    if (book != null) {
+      Move m = book.pick(s, moves, rng);
+      if (m != null) { lastResult = null; return m.copy(); }
+    }
+
+    // epsilon, depth cap and think time by level
+    float eps;
+    int maxDepth;
+    long budget;
+    switch (level) {
+      case EASY: eps = 0.35f; maxDepth = 2; budget = 60; break;
+      case HARD: eps = 0.05f; maxDepth = Search.MAX_DEPTH; budget = 800; break;
+      default:   eps = 0.15f; maxDepth = 4; budget = 250; break;
+    }
+    if (moveTimeMs > 0) budget = moveTimeMs;
+    // the opponent played the expected reply: the table already holds most of this search
+    if (hit) budget = Math.max(1, budget / 4);
+
+    if (randomMoveRate >= 0) eps = randomMoveRate;
+    if (rng.nextFloat() < eps) {
+      return moves.get(rng.nextInt(moves.size())).copy();
+    }
+
+    prepare();
+    tt.newSearch();
+    lastResult = pool.search(s, moves, tt, eval, maxDepth, budget, clock);
+    return lastResult.best.copy();
+  }
+
+  // table, threads and the current weights, for a search about to start
+  private void prepare() {
+    if (tt == null) tt = new TranspositionTable(hashMegabytes);
+    if (pool == null || pool.threads != threads) {
+      if (pool != null) pool.shutdown();
+      pool = new SearchPool(threads);
+    }
+    eval.man = Math.round(wMan * 1000);
+    eval.king = Math.round(wKing * 1000);
+    eval.mobility = Math.round(wMob * 1000);
+    eval.network = network;
+    pool.tablebase = tablebase;
+    pool.multiPv = 1;
+    pool.listener = null;
+  }
+
+  /** Drops the stored scores, which belong to the old weights or rules; on the engine thread, between searches. */
+  public void clearTable() {
+    cancel();
+    worker().execute(() -> { if (tt != null) tt.clear(); });
+  }
+
+  // waits for the engine thread to finish what it was given
+  private void idle() {
+    try {
+      worker().submit(() -> {}).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /** Stops the engine and helper threads; a later request starts them again. */
+  public synchronized void shutdown() {
+    if (worker == null) return;
+    cancel();
+    worker.execute(() -> {
+      if (pool != null) pool.shutdown();
+      pool = null;
+    });
+    worker.shutdown();
+    worker = null;
+  }
+
+  private synchronized ExecutorService worker() {
+    if (worker == null) {
+      worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "AI");
+        t.setDaemon(true);
+        return t;
+      });
+    }
+    return worker;
+  }
+
+  public void learnFromResult(int resultWhiteWin) {
+    // +1 if white won, -1 if black won, 0 draw
+    if (!learningEnabled) return;
+    float r = resultWhiteWin;
+    // tiny updates
+    wMan  += r * 0.01f;
+    wKing += r * 0.015f;
+    wMob  += r * 0.001f;
+    // clamp
+    wMan  = clamp(wMan, 0.5f, 2.5f);
+    wKing = clamp(wKing, 1.5f, 6.0f);
+    wMob  = clamp(wMob, 0.01f, 0.25f);
+    clearTable();
+
+    prefs.putFloat("wMan", wMan);
+    prefs.putFloat("wKing", wKing);
+    prefs.putFloat("wMob", wMob);
+  }
+
+  private float clamp(float v,float a,float b){ return Math.max(a, Math.min(b, v)); }
+}
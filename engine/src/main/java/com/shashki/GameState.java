@@ -0,0 +1,736 @@
+package com.shashki;
+
+import com.shashki.engine.Geometry;
+import com.shashki.engine.MoveGen;
+import com.shashki.engine.Nnue;
+import com.shashki.engine.PackedMove;
+import com.shashki.engine.PieceSquare;
+import com.shashki.engine.Zobrist;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+public class GameState {
+  public final Rules rules;
+  public final int N;
+  public final Geometry geo;
+  public final PieceSquare pst;
+  public final MoveGen gen; // the rules' switches, specialized for the common presets
+
+  // bitboards over the padded square layout of Geometry
+  public long whiteMen, whiteKings, blackMen, blackKings;
+  public boolean whiteTurn = true;
+
+  // Zobrist key of pieces, side to move and chain state; kept in step by every mutator
+  public long key;
+  // sum of the PieceSquare values of all pieces, white minus black; kept in step like key
+  public int positional;
+  // bumped by every change of position; cached move lists belong to one version
+  public int version;
+  // first layer of the attached network for both views, null without one; kept in step like key
+  public Nnue nnue;
+  public short[] acc;
+
+  // selection
+  public int selX = -1, selY = -1;
+
+  // capture chain state
+  public boolean mustContinueChain = false;
+  public int chainX = -1, chainY = -1;
+  public long chainTaken = 0; // jumped but still on the board ("Turkish strike"), removed when the chain ends
+
+  // undo
+  public static class Snapshot {
+    public long whiteMen, whiteKings, blackMen, blackKings;
+    public boolean whiteTurn;
+    public boolean mustContinueChain;
+    public int chainX, chainY;
+    public long chainTaken;
+  }
+  private final Deque<Snapshot> undo = new ArrayDeque<>();
+
+  // make/unmake history: only what a move changed besides its from/to squares
+  private long[] hRemoved = new long[64], hRemovedKings = new long[64], hKey = new long[64], hTaken = new long[64];
+  private int[] hPositional = new int[64];
+  private short[] hAcc; // accumulators before each move, hPly slots
+  private int[] hInfo = new int[64]; // bit0 side to move, bit1 promotion, rest previous chain square + 1
+  private int hPly = 0;
+
+  // legalMoves() of one version, and the same moves by from square
+  private int cachedVersion = -1;
+  private List<Move> cachedMoves;
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private final List<Move>[] cachedFrom = (List<Move>[]) new List[64];
+
+  // scratch for building capture sequences
+  private final int[] seqCaps = new int[32], seqLands = new int[32];
+  private boolean allRoutes; // keep sequences that only differ in the order of the captures
+  // output of legalPacked(); while packing, the generators write here instead of a list
+  private long[] packed = new long[64];
+  private int packedCount, packedFrom;
+  private boolean packing;
+
+  public GameState(Rules rules) {
+    this.rules = rules;
+    this.N = rules.size;
+    this.geo = Geometry.of(N);
+    this.pst = PieceSquare.of(N);
+    this.gen = MoveGen.of(rules);
+    reset();
+  }
+
+  /** Copies the position (not selection or undo history) for a search to mutate. */
+  public GameState(GameState o) {
+    this.rules = o.rules;
+    this.N = o.N;
+    this.geo = o.geo;
+    this.pst = o.pst;
+    this.gen = o.gen;
+    whiteMen = o.whiteMen; whiteKings = o.whiteKings;
+    blackMen = o.blackMen; blackKings = o.blackKings;
+    whiteTurn = o.whiteTurn;
+    mustContinueChain = o.mustContinueChain;
+    chainX = o.chainX; chainY = o.chainY;
+    chainTaken = o.chainTaken;
+    key = o.key;
+    positional = o.positional;
+    if (o.nnue != null) {
+      nnue = o.nnue;
+      acc = o.acc.clone();
+      hAcc = new short[hInfo.length * acc.length];
+    }
+  }
+
+  /** Evaluates with {@code net} from now on (null for none), keeping its accumulator up to date. */
+  public void attach(Nnue net) {
+    nnue = net;
+    if (net == null) { acc = hAcc = null; return; }
+    acc = new short[2 * net.hidden];
+    hAcc = new short[hInfo.length * acc.length];
+    net.refresh(this, acc);
+  }
+
+  public void reset() {
+    whiteMen = whiteKings = blackMen = blackKings = 0L;
+    // men on the dark squares of all but the two middle rows: 12/12 on 8x8, 20/20 on 10x10
+    int rows = (N - 2) / 2;
+    for (int y=0;y<rows;y++) for(int x=0;x<N;x++) if (isPlayable(x,y)) blackMen |= 1L << geo.square(x,y);
+    for (int y=N-rows;y<N;y++) for(int x=0;x<N;x++) if (isPlayable(x,y)) whiteMen |= 1L << geo.square(x,y);
+
+    whiteTurn = true;
+    clearSelection();
+    mustContinueChain = false;
+    chainX = chainY = -1;
+    chainTaken = 0;
+    undo.clear();
+    hPly = 0;
+    rehash();
+  }
+
+  /** Recomputes {@link #key} and {@link #positional}; needed only after writing the public fields directly. */
+  public void rehash() {
+    long k = Zobrist.of(Zobrist.W_MAN, whiteMen) ^ Zobrist.of(Zobrist.W_KING, whiteKings)
+      ^ Zobrist.of(Zobrist.B_MAN, blackMen) ^ Zobrist.of(Zobrist.B_KING, blackKings);
+    if (!whiteTurn) k ^= Zobrist.BLACK_TO_MOVE;
+    if (mustContinueChain && in(chainX, chainY)) k ^= Zobrist.CHAIN[geo.square(chainX, chainY)];
+    k ^= Zobrist.of(Zobrist.TAKEN, chainTaken);
+    key = k;
+    positional = pst.sum(Zobrist.W_MAN, whiteMen) + pst.sum(Zobrist.W_KING, whiteKings)
+      + pst.sum(Zobrist.B_MAN, blackMen) + pst.sum(Zobrist.B_KING, blackKings);
+    if (nnue != null) nnue.refresh(this, acc);
+    version++;
+  }
+
+  public void clearSelection() { selX=selY=-1; }
+
+  public boolean isPlayable(int x,int y) { return ((x+y)&1)==1; }
+
+  public Piece at(int x,int y){
+    int s = geo.square(x,y);
+    if (s < 0) return Piece.EMPTY;
+    long m = 1L << s;
+    if ((whiteMen & m) != 0) return Piece.W_MAN;
+    if ((whiteKings & m) != 0) return Piece.W_KING;
+    if ((blackMen & m) != 0) return Piece.B_MAN;
+    if ((blackKings & m) != 0) return Piece.B_KING;
+    return Piece.EMPTY;
+  }
+
+  public void set(int x,int y, Piece p){
+    int s = geo.square(x,y);
+    if (s < 0) return;
+    long m = 1L << s;
+    Piece old = at(x,y);
+    version++;
+    if (old != Piece.EMPTY) { key ^= Zobrist.PIECE[old.ordinal() - 1][s]; positional -= pst.value[old.ordinal() - 1][s]; }
+    if (p != Piece.EMPTY) { key ^= Zobrist.PIECE[p.ordinal() - 1][s]; positional += pst.value[p.ordinal() - 1][s]; }
+    if (nnue != null && old != Piece.EMPTY) nnue.remove(acc, old.ordinal() - 1, s);
+    if (nnue != null && p != Piece.EMPTY) nnue.add(acc, p.ordinal() - 1, s);
+    whiteMen &= ~m; whiteKings &= ~m; blackMen &= ~m; blackKings &= ~m;
+    switch (p) {
+      case W_MAN:  whiteMen |= m; break;
+      case W_KING: whiteKings |= m; break;
+      case B_MAN:  blackMen |= m; break;
+      case B_KING: blackKings |= m; break;
+      default: break;
+    }
+  }
+
+  public boolean in(int x,int y){ return x>=0 && y>=0 && x<N && y<N; }
+
+  public boolean sideOwns(Piece p){
+    if (p==Piece.EMPTY) return false;
+    return whiteTurn ? p.isWhite() : p.isBlack();
+  }
+
+  public boolean sideEnemy(Piece p){
+    if (p==Piece.EMPTY) return false;
+    return whiteTurn ? p.isBlack() : p.isWhite();
+  }
+
+  private Snapshot snap() {
+    Snapshot s = new Snapshot();
+    s.whiteMen = whiteMen; s.whiteKings = whiteKings;
+    s.blackMen = blackMen; s.blackKings = blackKings;
+    s.whiteTurn = whiteTurn;
+    s.mustContinueChain = mustContinueChain;
+    s.chainX = chainX; s.chainY = chainY;
+    s.chainTaken = chainTaken;
+    return s;
+  }
+
+  private void restore(Snapshot s) {
+    this.whiteMen = s.whiteMen; this.whiteKings = s.whiteKings;
+    this.blackMen = s.blackMen; this.blackKings = s.blackKings;
+    this.whiteTurn = s.whiteTurn;
+    this.mustContinueChain = s.mustContinueChain;
+    this.chainX = s.chainX; this.chainY = s.chainY;
+    this.chainTaken = s.chainTaken;
+    rehash();
+  }
+
+  public boolean canUndo(){ return !undo.isEmpty(); }
+
+  public void undo() {
+    if (undo.isEmpty()) return;
+    restore(undo.pop());
+    clearSelection();
+  }
+
+  // --- move generation (rules by gen) ---
+
+  /**
+   * Moves as the player enters them: one step or one jump at a time. While a chain is
+   * being played, only the next jumps of the capturing piece are listed. The list is
+   * built once per {@link #version} and shared, so it can't be modified.
+   */
+  public List<Move> legalMoves() {
+    if (cachedVersion == version) return cachedMoves;
+    List<Move> out = hops();
+    Arrays.fill(cachedFrom, null);
+    for (Move m : out) {
+      int f = geo.square(m.fx, m.fy);
+      if (cachedFrom[f] == null) cachedFrom[f] = new ArrayList<>(4);
+      cachedFrom[f].add(m);
+    }
+    cachedMoves = Collections.unmodifiableList(out);
+    cachedVersion = version; // generating may end a finished chain, which bumps the version
+    return cachedMoves;
+  }
+
+  private List<Move> hops() {
+    // every route, so a chain can be entered in any order that takes the same pieces
+    allRoutes = true;
+    List<Move> seqs;
+    try { seqs = legalSequences(); } finally { allRoutes = false; }
+    List<Move> out = new ArrayList<>(seqs.size());
+    for (Move m : seqs) {
+      if (m.path.isEmpty()) { out.add(m); continue; }
+      // first hop of a multi-jump
+      int[] l = m.path.get(0);
+      boolean dup = false;
+      for (Move h : out) if (h.fx==m.fx && h.fy==m.fy && h.tx==l[0] && h.ty==l[1]) { dup = true; break; }
+      if (dup) continue;
+      Move h = new Move(m.fx, m.fy, l[0], l[1]);
+      h.captures.add(m.captures.get(0));
+      out.add(h);
+    }
+    return out;
+  }
+
+  /**
+   * Complete moves for the search: a capture is the whole chain, with every captured
+   * square and intermediate landing, and playing it always passes the turn. Chains that
+   * take the same pieces and end alike are one move, listed once.
+   */
+  public List<Move> legalSequences() {
+    List<Move> out = new ArrayList<>();
+    generate(out);
+    return out;
+  }
+
+  /**
+   * {@link #legalSequences} as {@link PackedMove}s, without allocating: returns the count,
+   * the moves are read back with {@link #packed(int)} until the next call.
+   */
+  public int legalPacked() {
+    packing = true;
+    packedCount = packedFrom = 0;
+    try { generate(null); } finally { packing = false; }
+    return packedCount;
+  }
+
+  public long packed(int i) { return packed[i]; }
+
+  // fills out, or the packed buffer when it is null; drops all but the longest captures if the rules say so
+  private void generate(List<Move> out) {
+    long occ = occupied();
+    if (mustContinueChain && in(chainX,chainY)) {
+      int sq = geo.square(chainX,chainY);
+      extend(out, sq, sq, (kings() & (1L << sq)) != 0, occ & ~(1L << sq), chainTaken, 0);
+      if (generated(out) > 0) { longest(out); return; }
+      // no more captures => chain ends
+      clearPieces(chainTaken);
+      mustContinueChain = false;
+      chainX = chainY = -1;
+      chainTaken = 0;
+      rehash();
+      occ = occupied();
+    }
+
+    // normal: gather all moves, but enforce mandatory capture
+    if (canCapture(men(), kings())) {
+      long own = men() | kings();
+      while (own != 0) {
+        int sq = Long.numberOfTrailingZeros(own); own &= own - 1;
+        packedFrom = packedCount;
+        extend(out, sq, sq, (kings() & (1L << sq)) != 0, occ & ~(1L << sq), 0, 0);
+      }
+      if (gen.mandatory()) { longest(out); return; }
+    }
+    genQuiet(out, men(), kings());
+  }
+
+  private int generated(List<Move> out) { return out == null ? packedCount : out.size(); }
+
+  private void longest(List<Move> caps) {
+    if (!gen.longestOnly()) return;
+    int mx=0;
+    if (caps == null) {
+      for (int i=0; i<packedCount; i++) mx=Math.max(mx, PackedMove.captureCount(packed[i]));
+      int n=0;
+      for (int i=0; i<packedCount; i++) if (PackedMove.captureCount(packed[i])==mx) packed[n++]=packed[i];
+      packedCount=n;
+      return;
+    }
+    for(Move m:caps) mx=Math.max(mx, m.captureCount());
+    // in place rather than removeIf, which Android only has from API 24
+    int n=0;
+    for (int i=0; i<caps.size(); i++) if (caps.get(i).captureCount()==mx) caps.set(n++, caps.get(i));
+    caps.subList(n, caps.size()).clear();
+  }
+
+  private void addPacked(long p) {
+    if (packedCount == packed.length) packed = Arrays.copyOf(packed, packedCount * 2);
+    packed[packedCount++] = p;
+  }
+
+  public List<Move> legalMovesFor(int x,int y){
+    legalMoves();
+    int s = geo.square(x,y);
+    List<Move> from = s < 0 ? null : cachedFrom[s];
+    return from == null ? new ArrayList<>() : new ArrayList<>(from);
+  }
+
+  private long men()   { return whiteTurn ? whiteMen : blackMen; }
+  private long kings() { return whiteTurn ? whiteKings : blackKings; }
+  private long enemy() { return whiteTurn ? blackMen | blackKings : whiteMen | whiteKings; }
+  private long occupied() { return whiteMen | whiteKings | blackMen | blackKings; }
+  private long promotionRow() { return whiteTurn ? geo.topRow : geo.bottomRow; }
+
+  private void clearPieces(long m) {
+    whiteMen &= ~m; whiteKings &= ~m; blackMen &= ~m; blackKings &= ~m;
+  }
+
+  private void genQuiet(List<Move> out, long men, long kings) {
+    long empty = geo.all & ~occupied();
+    long promo = promotionRow();
+    for (int d=0; d<4; d++) {
+      long from = gen.steppers(d, whiteTurn, men, kings);
+      int s = geo.delta[d];
+      long to = Geometry.shift(from, s) & empty;
+      while (to != 0) {
+        int t = Long.numberOfTrailingZeros(to); to &= to - 1;
+        boolean promotes = (men & (1L << (t - s))) != 0 && (promo & (1L << t)) != 0;
+        if (packing) { addPacked(PackedMove.of(t - s, t, promotes, 0, geo.half)); continue; }
+        addMove(out, t - s, t).promotes = promotes;
+      }
+    }
+    if (!gen.slides()) return;
+    long occ = occupied();
+    while (kings != 0) {
+      int f = Long.numberOfTrailingZeros(kings); kings &= kings - 1;
+      for (int d=0; d<4; d++) {
+        long to = geo.span(d, f, occ);
+        while (to != 0) {
+          int t = Long.numberOfTrailingZeros(to); to &= to - 1;
+          if (packing) addPacked(PackedMove.of(f, t, false, 0, geo.half)); else addMove(out, f, t);
+        }
+      }
+    }
+  }
+
+  /**
+   * Depth-first search over the jumps of the piece that started on {@code from} and now
+   * stands on {@code sq} after {@code n} jumps; every chain that can't go on is a move.
+   * {@code occ} excludes the moving piece, {@code taken} are the pieces jumped so far.
+   */
+  private void extend(List<Move> out, int from, int sq, boolean king, long occ, long taken, int n) {
+    long enemy = enemy() & ~taken;
+    boolean flying = king && gen.flyingCaptures();
+    boolean found = false;
+    for (int d=0; d<4; d++) {
+      if (!king && !gen.manJumps(d, whiteTurn)) continue;
+      int v;
+      long land;
+      if (flying) {
+        // slide to enemy then empty squares beyond
+        long blk = geo.ray[d][sq] & occ;
+        if (blk == 0) continue;
+        v = geo.nearest(d, blk);
+        if ((enemy & (1L << v)) == 0) continue;
+        land = geo.span(d, v, occ);
+      } else {
+        v = geo.next[d][sq];
+        if (v < 0 || (enemy & (1L << v)) == 0) continue;
+        int l = geo.next[d][v];
+        if (l < 0 || (occ & (1L << l)) != 0) continue;
+        land = 1L << l;
+      }
+      // Turkish strike: jumped pieces stay on the board (and in the way) until the chain ends
+      long occ2 = gen.removeAtEnd() ? occ : occ & ~(1L << v);
+      while (land != 0) {
+        int l = Long.numberOfTrailingZeros(land); land &= land - 1;
+        found = true;
+        seqCaps[n] = v; seqLands[n] = l;
+        // a man reaching the last row mid-chain goes on as a king only if the rules say so
+        boolean k2 = king || (gen.kingMidChain() && (promotionRow() & (1L << l)) != 0);
+        extend(out, from, l, k2, occ2, taken | (1L << v), n + 1);
+      }
+    }
+    if (found || n == 0) return;
+
+    boolean promotes = (kings() & (1L << from)) == 0 && (king || (promotionRow() & (1L << sq)) != 0);
+    if (packing) {
+      long p = PackedMove.of(from, sq, promotes, taken & ~chainTaken, geo.half);
+      for (int i = packedFrom; i < packedCount; i++) if (packed[i] == p) return;
+      addPacked(p);
+      return;
+    }
+    if (n > 1 && !allRoutes && listed(out, from, sq, taken, promotes)) return;
+    Move m = addMove(out, from, sq);
+    for (int i=0; i<n; i++) m.captures.add(new int[]{geo.xOf[seqCaps[i]], geo.yOf[seqCaps[i]]});
+    for (int i=0; i<n-1; i++) m.path.add(new int[]{geo.xOf[seqLands[i]], geo.yOf[seqLands[i]]});
+    m.promotes = promotes;
+  }
+
+  // whether the same capture is already in out; a piece's chains are listed together at the end
+  private boolean listed(List<Move> out, int from, int to, long taken, boolean promotes) {
+    for (int i = out.size() - 1; i >= 0; i--) {
+      Move o = out.get(i);
+      if (geo.square(o.fx, o.fy) != from) return false;
+      if (geo.square(o.tx, o.ty) != to || o.promotes != promotes) continue;
+      long t = chainTaken; // taken also holds what the chain took before this move
+      for (int[] c : o.captures) t |= 1L << geo.square(c[0], c[1]);
+      if (t == taken) return true;
+    }
+    return false;
+  }
+
+  // whether any piece of the side to move can jump, using whole-board shifts
+  private boolean canCapture(long men, long kings) {
+    long occ = occupied(), empty = geo.all & ~occ, enemy = enemy();
+    for (int d=0; d<4; d++) {
+      long from = gen.jumpers(d, whiteTurn, men, kings);
+      int s = geo.delta[d];
+      if ((Geometry.shift(Geometry.shift(from, s) & enemy, s) & empty) != 0) return true;
+    }
+    if (!gen.flyingCaptures()) return false;
+    while (kings != 0) {
+      int f = Long.numberOfTrailingZeros(kings); kings &= kings - 1;
+      for (int d=0; d<4; d++) {
+        long blk = geo.ray[d][f] & occ;
+        if (blk == 0) continue;
+        int e = geo.nearest(d, blk);
+        if ((enemy & (1L << e)) != 0 && geo.span(d, e, occ) != 0) return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Pseudo-legal count of one side's non-capturing moves: steps to empty squares and king
+   * slides, whether or not a capture is due. A few shifts, cheap enough for every leaf.
+   */
+  public int mobility(boolean white) {
+    long men = white ? whiteMen : blackMen, kings = white ? whiteKings : blackKings;
+    long occ = occupied(), empty = geo.all & ~occ;
+    int n = 0;
+    for (int d=0; d<4; d++) {
+      n += Long.bitCount(Geometry.shift(gen.steppers(d, white, men, kings), geo.delta[d]) & empty);
+    }
+    if (!gen.slides()) return n;
+    while (kings != 0) {
+      int f = Long.numberOfTrailingZeros(kings); kings &= kings - 1;
+      for (int d=0; d<4; d++) n += Long.bitCount(geo.span(d, f, occ));
+    }
+    return n;
+  }
+
+  private Move addMove(List<Move> out, int from, int to) {
+    Move m = new Move(geo.xOf[from], geo.yOf[from], geo.xOf[to], geo.yOf[to]);
+    out.add(m);
+    return m;
+  }
+
+  /**
+   * Plays a move from the UI or the network: a single hop from {@link #legalMoves}, or a
+   * whole sequence from {@link #legalSequences} played hop by hop. One undo step either way.
+   */
+  public boolean applyMove(Move m) {
+    Snapshot before = snap();
+    int fx = m.fx, fy = m.fy;
+    for (int i=0; i<=m.path.size(); i++) {
+      int tx = i < m.path.size() ? m.path.get(i)[0] : m.tx;
+      int ty = i < m.path.size() ? m.path.get(i)[1] : m.ty;
+      Move chosen = null;
+      for (Move lm : legalMoves()) {
+        if (lm.fx==fx && lm.fy==fy && lm.tx==tx && lm.ty==ty) { chosen = lm; break; }
+      }
+      if (chosen==null) { restore(before); return false; }
+      playHop(chosen);
+      if (chosen.promotes) m.promotes = true;
+      fx = tx; fy = ty;
+    }
+    undo.push(before);
+    clearSelection();
+    return true;
+  }
+
+  private void playHop(Move m) {
+    int f = geo.square(m.fx, m.fy), t = geo.square(m.tx, m.ty);
+    long fb = 1L << f, tb = 1L << t;
+    boolean king = (kings() & fb) != 0;
+    if (whiteTurn) {
+      if (king) whiteKings = (whiteKings & ~fb) | tb; else whiteMen = (whiteMen & ~fb) | tb;
+    } else {
+      if (king) blackKings = (blackKings & ~fb) | tb; else blackMen = (blackMen & ~fb) | tb;
+    }
+    boolean lastRow = !king && (promotionRow() & tb) != 0;
+
+    boolean more = false;
+    if (!m.captures.isEmpty()) {
+      int[] c = m.captures.get(0);
+      long cb = 1L << geo.square(c[0], c[1]);
+      // else we'll remove at end of chain
+      if (gen.removeAtEnd()) chainTaken |= cb; else clearPieces(cb);
+      // if promoted and rules says continue as king, the rest of the chain is a king's
+      boolean k2 = king || (lastRow && gen.kingMidChain());
+      List<Move> next = new ArrayList<>();
+      extend(next, t, t, k2, occupied() & ~tb, chainTaken, 0);
+      more = !next.isEmpty();
+      if (more && k2 && !king) promote(tb);
+    }
+
+    if (more) {
+      mustContinueChain = true;
+      chainX = m.tx; chainY = m.ty;
+    } else {
+      clearPieces(chainTaken);
+      chainTaken = 0;
+      if (lastRow) promote(tb);
+      mustContinueChain = false; chainX = chainY = -1;
+      whiteTurn = !whiteTurn;
+    }
+    m.promotes = lastRow;
+    rehash();
+  }
+
+  private void promote(long b) {
+    if (whiteTurn) { whiteMen &= ~b; whiteKings |= b; }
+    else { blackMen &= ~b; blackKings |= b; }
+  }
+
+  /**
+   * Plays a move from {@link #legalSequences} in place for search. Only the removed
+   * pieces, promotion and the previous chain state are recorded; {@link #unmake} must
+   * get the same move back.
+   */
+  public void make(Move m) { make(pack(m)); }
+
+  public void unmake(Move m) { unmake(pack(m)); }
+
+  /** The {@link PackedMove} of a move from {@link #legalSequences}. */
+  public long pack(Move m) {
+    long caps = 0;
+    for (int i=0; i<m.captures.size(); i++) {
+      int[] c = m.captures.get(i);
+      caps |= 1L << geo.square(c[0], c[1]);
+    }
+    return PackedMove.of(geo.square(m.fx, m.fy), geo.square(m.tx, m.ty), m.promotes, caps, geo.half);
+  }
+
+  /** The legal sequence a packed move stands for, with its landings, or null. */
+  public Move unpack(long p) {
+    for (Move m : legalSequences()) if (pack(m) == p) return m;
+    return null;
+  }
+
+  /** Plays a move from {@link #legalPacked}; same contract as {@link #make(Move)}. */
+  public void make(long p) {
+    boolean promotes = PackedMove.promotes(p);
+    if (hPly == hInfo.length) {
+      hRemoved = Arrays.copyOf(hRemoved, hPly * 2);
+      hRemovedKings = Arrays.copyOf(hRemovedKings, hPly * 2);
+      hInfo = Arrays.copyOf(hInfo, hPly * 2);
+      hKey = Arrays.copyOf(hKey, hPly * 2);
+      hTaken = Arrays.copyOf(hTaken, hPly * 2);
+      hPositional = Arrays.copyOf(hPositional, hPly * 2);
+      if (hAcc != null) hAcc = Arrays.copyOf(hAcc, hPly * 2 * acc.length);
+    }
+    int h = hPly++;
+    int chain = mustContinueChain ? geo.square(chainX, chainY) : -1;
+    hKey[h] = key;
+    hTaken[h] = chainTaken;
+    hPositional[h] = positional;
+    hInfo[h] = (whiteTurn ? 1 : 0) | (promotes ? 2 : 0) | ((chain + 1) << 2);
+    version++;
+
+    int f = PackedMove.from(p), t = PackedMove.to(p);
+    long fb = 1L << f, tb = 1L << t;
+    long removed = chainTaken | PackedMove.captured(p, geo.half);
+    if (nnue != null) {
+      System.arraycopy(acc, 0, hAcc, h * acc.length, acc.length);
+      accMove(f, t, promotes, removed);
+    }
+
+    // a chain may end on its own start square, so clear-then-set rather than xor
+    long removedKings;
+    long k = key;
+    int v = positional;
+    long[] man, king;
+    int[] vMan, vKing;
+    if (whiteTurn) {
+      man = Zobrist.PIECE[Zobrist.W_MAN]; king = Zobrist.PIECE[Zobrist.W_KING];
+      vMan = pst.value[Zobrist.W_MAN]; vKing = pst.value[Zobrist.W_KING];
+      if ((whiteKings & fb) != 0) { whiteKings = (whiteKings & ~fb) | tb; k ^= king[f] ^ king[t]; v += vKing[t] - vKing[f]; }
+      else if (promotes) { whiteMen &= ~fb; whiteKings |= tb; k ^= man[f] ^ king[t]; v += vKing[t] - vMan[f]; }
+      else { whiteMen = (whiteMen & ~fb) | tb; k ^= man[f] ^ man[t]; v += vMan[t] - vMan[f]; }
+      removedKings = blackKings & removed;
+      k ^= Zobrist.of(Zobrist.B_KING, removedKings) ^ Zobrist.of(Zobrist.B_MAN, removed & ~removedKings);
+      v -= pst.sum(Zobrist.B_KING, removedKings) + pst.sum(Zobrist.B_MAN, removed & ~removedKings);
+      blackMen &= ~removed; blackKings &= ~removed;
+    } else {
+      man = Zobrist.PIECE[Zobrist.B_MAN]; king = Zobrist.PIECE[Zobrist.B_KING];
+      vMan = pst.value[Zobrist.B_MAN]; vKing = pst.value[Zobrist.B_KING];
+      if ((blackKings & fb) != 0) { blackKings = (blackKings & ~fb) | tb; k ^= king[f] ^ king[t]; v += vKing[t] - vKing[f]; }
+      else if (promotes) { blackMen &= ~fb; blackKings |= tb; k ^= man[f] ^ king[t]; v += vKing[t] - vMan[f]; }
+      else { blackMen = (blackMen & ~fb) | tb; k ^= man[f] ^ man[t]; v += vMan[t] - vMan[f]; }
+      removedKings = whiteKings & removed;
+      k ^= Zobrist.of(Zobrist.W_KING, removedKings) ^ Zobrist.of(Zobrist.W_MAN, removed & ~removedKings);
+      v -= pst.sum(Zobrist.W_KING, removedKings) + pst.sum(Zobrist.W_MAN, removed & ~removedKings);
+      whiteMen &= ~removed; whiteKings &= ~removed;
+    }
+    positional = v;
+    hRemoved[h] = removed;
+    hRemovedKings[h] = removedKings;
+
+    if (chain >= 0) k ^= Zobrist.CHAIN[chain];
+    k ^= Zobrist.of(Zobrist.TAKEN, chainTaken);
+    mustContinueChain = false; chainX = chainY = -1;
+    chainTaken = 0;
+    whiteTurn = !whiteTurn;
+    key = k ^ Zobrist.BLACK_TO_MOVE;
+  }
+
+  public void unmake(long p) {
+    int h = --hPly;
+    int info = hInfo[h];
+    version++;
+    whiteTurn = (info & 1) != 0;
+    long fb = 1L << PackedMove.from(p), tb = 1L << PackedMove.to(p);
+    long removed = hRemoved[h], removedKings = hRemovedKings[h];
+    if (whiteTurn) {
+      if ((info & 2) != 0) { whiteKings &= ~tb; whiteMen |= fb; }
+      else if ((whiteKings & tb) != 0) whiteKings = (whiteKings & ~tb) | fb;
+      else whiteMen = (whiteMen & ~tb) | fb;
+      blackKings |= removedKings; blackMen |= removed & ~removedKings;
+    } else {
+      if ((info & 2) != 0) { blackKings &= ~tb; blackMen |= fb; }
+      else if ((blackKings & tb) != 0) blackKings = (blackKings & ~tb) | fb;
+      else blackMen = (blackMen & ~tb) | fb;
+      whiteKings |= removedKings; whiteMen |= removed & ~removedKings;
+    }
+    int chain = (info >>> 2) - 1;
+    mustContinueChain = chain >= 0;
+    chainX = chain >= 0 ? geo.xOf[chain] : -1;
+    chainY = chain >= 0 ? geo.yOf[chain] : -1;
+    chainTaken = hTaken[h];
+    key = hKey[h];
+    positional = hPositional[h];
+    if (nnue != null) System.arraycopy(hAcc, h * acc.length, acc, 0, acc.length);
+  }
+
+  // the accumulator update of make(), before the bitboards change
+  private void accMove(int f, int t, boolean promotes, long removed) {
+    int man = whiteTurn ? Zobrist.W_MAN : Zobrist.B_MAN, king = man + 1;
+    long kings = whiteTurn ? blackKings : whiteKings;
+    int from = ((whiteTurn ? whiteKings : blackKings) & 1L << f) != 0 ? king : man;
+    nnue.move(acc, from, f, promotes ? king : from, t);
+    nnue.removeAll(acc, man ^ 2, removed & ~kings);
+    nnue.removeAll(acc, king ^ 2, removed & kings);
+  }
+
+  public boolean isGameOver() {
+    // if current side has no legal moves => loses
+    return legalMoves().isEmpty();
+  }
+
+  public int winner() {
+    // 1 white wins, -1 black wins, 0 none/draw
+    if (!isGameOver()) return 0;
+    // side to move has no moves -> loses
+    return whiteTurn ? -1 : 1;
+  }
+
+  public int[] exportBoard() {
+    int[] out = new int[N*N];
+    int i=0;
+    for (int y=0;y<N;y++) for(int x=0;x<N;x++){
+      out[i++] = at(x,y).ordinal();
+    }
+    return out;
+  }
+
+  public void importBoard(int[] data, boolean whiteTurn) {
+    whiteMen = whiteKings = blackMen = blackKings = 0L;
+    int i=0;
+    for (int y=0;y<N;y++) for(int x=0;x<N;x++){
+      int v = data[i++];
+      if (v<0 || v>=Piece.values().length) v = 0;
+      set(x, y, Piece.values()[v]);
+    }
+    this.whiteTurn = whiteTurn;
+    mustContinueChain = false;
+    chainX = chainY = -1;
+    chainTaken = 0;
+    clearSelection();
+    undo.clear();
+    hPly = 0;
+    rehash();
+  }
+}
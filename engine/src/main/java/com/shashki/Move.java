@@ -6,6 +6,8 @@ import java.util.List;
 public class Move {
   public final int fx, fy, tx, ty;
   public final List<int[]> captures = new ArrayList<>(); // [x,y]
+  // landing squares between from and to of a multi-jump, in order; empty for a single step or jump
+  public final List<int[]> path = new ArrayList<>();
   public boolean promotes = false;
 
   public Move(int fx, int fy, int tx, int ty) {
@@ -17,6 +19,7 @@ public class Move {
   public Move copy() {
     Move m = new Move(fx, fy, tx, ty);
     for (int[] c : captures) m.captures.add(new int[]{c[0], c[1]});
+    for (int[] p : path) m.path.add(new int[]{p[0], p[1]});
     m.promotes = promotes;
     return m;
   }
@@ -0,0 +1,53 @@
+package com.shashki;
+
+public class Rules {
+  // Russian checkers defaults
+  public int size = 8;
+  public boolean mandatoryCapture = true;
+  public boolean maxCaptureRule = false; // optional
+  public boolean removeCapturedAtEndOfChain = false; // "Turkish strike" style; off for Russian
+  public boolean manMovesForwardOnly = true;
+  public boolean manCapturesBackward = true;
+  public boolean kingFlying = true; // king moves any distance diagonally
+  public boolean kingCaptureFlying = true; // king captures at distance
+  public boolean promoteImmediate = true; // promote as soon as reaches back rank
+  public boolean continueCaptureAsKingWhenPromoted = true;
+
+  public static Rules russian() { return new Rules(); }
+
+  /**
+   * International draughts on 10x10, 20 men a side: the longest capture is mandatory,
+   * jumped pieces leave the board only when the chain ends, no promotion mid-chain.
+   */
+  public static Rules international() {
+    Rules r = brazilian();
+    r.size = 10;
+    return r;
+  }
+
+  /** International rules on 8x8. */
+  public static Rules brazilian() {
+    Rules r = new Rules();
+    r.maxCaptureRule = true;
+    r.removeCapturedAtEndOfChain = true;
+    r.continueCaptureAsKingWhenPromoted = false;
+    return r;
+  }
+
+  /** Pool checkers: any capture, no promotion mid-chain. */
+  public static Rules pool() {
+    Rules r = new Rules();
+    r.continueCaptureAsKingWhenPromoted = false;
+    return r;
+  }
+
+  /** English draughts: kings move and capture one square, men capture forward only. */
+  public static Rules english() {
+    Rules r = new Rules();
+    r.manCapturesBackward = false;
+    r.kingFlying = false;
+    r.kingCaptureFlying = false;
+    r.continueCaptureAsKingWhenPromoted = false;
+    return r;
+  }
+}
@@ -0,0 +1,24 @@
+package com.shashki.engine;
+
+import com.shashki.GameState;
+
+/**
+ * Static evaluation in thousandths of a man, from the side to move's point of view.
+ * Material is counted off the bitboards, the positional sum is kept by GameState as
+ * moves are made, and mobility is a pseudo-legal count; no move list is built.
+ * A position with a {@link Nnue} attached is scored by the network instead.
+ */
+public final class Evaluator {
+  public int man = 1000, king = 3000, mobility = 80;
+  public Nnue network; // attached to the positions of searches using this evaluator, null for none
+
+  public int evaluate(GameState s) {
+    if (s.nnue != null) return s.nnue.evaluate(s);
+    int score = man * (Long.bitCount(s.whiteMen) - Long.bitCount(s.blackMen))
+      + king * (Long.bitCount(s.whiteKings) - Long.bitCount(s.blackKings))
+      + s.positional;
+    // mobility: quiet moves of the side to move against the other side's
+    int mob = (s.mobility(s.whiteTurn) - s.mobility(!s.whiteTurn)) * mobility;
+    return s.whiteTurn ? score + mob : -score + mob;
+  }
+}
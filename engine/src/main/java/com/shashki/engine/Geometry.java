@@ -0,0 +1,96 @@
+package com.shashki.engine;
+
+import java.util.Arrays;
+
+/**
+ * Square layout and precomputed tables for one board size.
+ *
+ * Playable squares are packed into a long using the padded layout: every pair of
+ * rows takes N bits followed by one ghost bit, so the four diagonal steps are plain
+ * shifts by -(H+1), -H, +H and +H+1 (H = N/2). Steps that leave the board land on a
+ * ghost bit or fall off the ends of the long, and masking with {@link #all} drops them.
+ * Fits every even size up to 10x10.
+ */
+public final class Geometry {
+  public static final int UL = 0, UR = 1, DL = 2, DR = 3;
+  public static final int MAX_N = 10;
+
+  private static final Geometry[] CACHE = new Geometry[MAX_N + 1];
+
+  public final int n, half;
+  public final int[] delta = new int[4];
+  public final long all;
+  public final long topRow, bottomRow; // white promotes on top, black on bottom
+  public final int[] xOf = new int[64], yOf = new int[64];
+  // squares along each diagonal, not including the start square
+  public final long[][] ray = new long[4][64];
+  // neighbour in each direction, -1 off the board
+  public final int[][] next = new int[4][64];
+
+  private final int[] sq;
+
+  public static synchronized Geometry of(int n) {
+    if (n < 4 || n > MAX_N || (n & 1) != 0) throw new IllegalArgumentException("unsupported board size " + n);
+    if (CACHE[n] == null) CACHE[n] = new Geometry(n);
+    return CACHE[n];
+  }
+
+  private Geometry(int n) {
+    this.n = n;
+    this.half = n / 2;
+    delta[UL] = -(half + 1); delta[UR] = -half;
+    delta[DL] = half;        delta[DR] = half + 1;
+
+    sq = new int[n * n];
+    Arrays.fill(xOf, -1);
+    Arrays.fill(yOf, -1);
+    long a = 0, top = 0, bottom = 0;
+    for (int y = 0; y < n; y++) for (int x = 0; x < n; x++) {
+      if (((x + y) & 1) == 0) { sq[y * n + x] = -1; continue; }
+      int s = (y >> 1) * (n + 1) + (y & 1) * half + (x >> 1);
+      sq[y * n + x] = s;
+      xOf[s] = x; yOf[s] = y;
+      a |= 1L << s;
+      if (y == 0) top |= 1L << s;
+      if (y == n - 1) bottom |= 1L << s;
+    }
+    all = a; topRow = top; bottomRow = bottom;
+
+    int[][] dirs = {{-1, -1}, {1, -1}, {-1, 1}, {1, 1}};
+    for (int[] t : next) Arrays.fill(t, -1);
+    for (int s = 0; s < 64; s++) {
+      if (xOf[s] < 0) continue;
+      for (int d = 0; d < 4; d++) {
+        next[d][s] = square(xOf[s] + dirs[d][0], yOf[s] + dirs[d][1]);
+        long r = 0;
+        int x = xOf[s] + dirs[d][0], y = yOf[s] + dirs[d][1];
+        while (x >= 0 && y >= 0 && x < n && y < n) {
+          r |= 1L << sq[y * n + x];
+          x += dirs[d][0]; y += dirs[d][1];
+        }
+        ray[d][s] = r;
+      }
+    }
+  }
+
+  /** Bit index of (x,y), or -1 for light or off-board squares. */
+  public int square(int x, int y) {
+    if (x < 0 || y < 0 || x >= n || y >= n) return -1;
+    return sq[y * n + x];
+  }
+
+  public static long shift(long bb, int d) { return d > 0 ? bb << d : bb >>> -d; }
+
+  /** The square of {@code m} closest to the ray origin in direction {@code d}. */
+  public int nearest(int d, long m) {
+    return delta[d] > 0 ? Long.numberOfTrailingZeros(m) : 63 - Long.numberOfLeadingZeros(m);
+  }
+
+  /** Squares reachable from {@code s} in direction {@code d} before the first occupied one. */
+  public long span(int d, int s, long occ) {
+    long r = ray[d][s], blk = r & occ;
+    if (blk == 0) return r;
+    int b = nearest(d, blk);
+    return r & ~ray[d][b] & ~(1L << b);
+  }
+}
@@ -0,0 +1,116 @@
+package com.shashki.engine;
+
+import com.shashki.Rules;
+
+/**
+ * The rule switches of move generation, as a final class per common preset. GameState
+ * asks its generator instead of reading {@link Rules} in the inner loops; every method of
+ * a preset returns a constant or a fixed mask, so once the JIT sees one generator at a
+ * call site it inlines it and the rule checks fold away. Flag combinations that aren't a
+ * preset get {@link Generic}, which reads the rules on every call as before.
+ */
+public abstract class MoveGen {
+  /** The specialized generator for {@code rules}, or the generic one. */
+  public static MoveGen of(Rules rules) {
+    if (sameMoves(rules, Rules.russian())) return new Russian();
+    if (sameMoves(rules, Rules.international())) return new International();
+    if (sameMoves(rules, Rules.pool())) return new Pool();
+    if (sameMoves(rules, Rules.english())) return new English();
+    return new Generic(rules);
+  }
+
+  // the switches move generation reads; the board size is GameState's business
+  private static boolean sameMoves(Rules a, Rules b) {
+    return a.mandatoryCapture == b.mandatoryCapture && a.maxCaptureRule == b.maxCaptureRule
+        && a.removeCapturedAtEndOfChain == b.removeCapturedAtEndOfChain
+        && a.manMovesForwardOnly == b.manMovesForwardOnly && a.manCapturesBackward == b.manCapturesBackward
+        && a.kingFlying == b.kingFlying && a.kingCaptureFlying == b.kingCaptureFlying
+        && a.continueCaptureAsKingWhenPromoted == b.continueCaptureAsKingWhenPromoted;
+  }
+
+  /** Pieces that step to the next square in direction {@code d}: men going forward, short kings. */
+  public abstract long steppers(int d, boolean white, long men, long kings);
+
+  /** Pieces that may jump an adjacent piece in direction {@code d}: men, short-capturing kings. */
+  public abstract long jumpers(int d, boolean white, long men, long kings);
+
+  /** Whether a man jumps in direction {@code d}. */
+  public abstract boolean manJumps(int d, boolean white);
+
+  public abstract boolean slides();          // kings move any distance
+  public abstract boolean flyingCaptures();  // kings capture at distance
+  public abstract boolean mandatory();       // a capture must be taken
+  public abstract boolean longestOnly();     // only the chains taking the most pieces
+  public abstract boolean removeAtEnd();     // jumped pieces stay until the chain ends
+  public abstract boolean kingMidChain();    // a man reaching the last row mid-chain goes on as a king
+
+  // white men go up (UL/UR), black men go down (DL/DR)
+  static boolean forward(int d, boolean white) { return white ? d < Geometry.DL : d >= Geometry.DL; }
+
+  // flying kings, men step forward and jump both ways
+  private abstract static class Flying extends MoveGen {
+    @Override public final long steppers(int d, boolean white, long men, long kings) { return forward(d, white) ? men : 0; }
+    @Override public final long jumpers(int d, boolean white, long men, long kings) { return men; }
+    @Override public final boolean manJumps(int d, boolean white) { return true; }
+    @Override public final boolean slides() { return true; }
+    @Override public final boolean flyingCaptures() { return true; }
+    @Override public final boolean mandatory() { return true; }
+  }
+
+  static final class Russian extends Flying {
+    @Override public boolean longestOnly() { return false; }
+    @Override public boolean removeAtEnd() { return false; }
+    @Override public boolean kingMidChain() { return true; }
+  }
+
+  // also Brazilian, the same rules on 8x8: the longest capture, pieces taken at the end, no promotion mid-chain
+  static final class International extends Flying {
+    @Override public boolean longestOnly() { return true; }
+    @Override public boolean removeAtEnd() { return true; }
+    @Override public boolean kingMidChain() { return false; }
+  }
+
+  // any capture, promotion only where the chain ends
+  static final class Pool extends Flying {
+    @Override public boolean longestOnly() { return false; }
+    @Override public boolean removeAtEnd() { return false; }
+    @Override public boolean kingMidChain() { return false; }
+  }
+
+  // short kings, men only forward
+  static final class English extends MoveGen {
+    @Override public long steppers(int d, boolean white, long men, long kings) { return forward(d, white) ? men | kings : kings; }
+    @Override public long jumpers(int d, boolean white, long men, long kings) { return forward(d, white) ? men | kings : kings; }
+    @Override public boolean manJumps(int d, boolean white) { return forward(d, white); }
+    @Override public boolean slides() { return false; }
+    @Override public boolean flyingCaptures() { return false; }
+    @Override public boolean mandatory() { return true; }
+    @Override public boolean longestOnly() { return false; }
+    @Override public boolean removeAtEnd() { return false; }
+    @Override public boolean kingMidChain() { return false; }
+  }
+
+  static final class Generic extends MoveGen {
+    private final Rules rules;
+
+    Generic(Rules rules) { this.rules = rules; }
+
+    @Override public long steppers(int d, boolean white, long men, long kings) {
+      long from = (rules.manMovesForwardOnly && !forward(d, white)) ? 0 : men;
+      return rules.kingFlying ? from : from | kings;
+    }
+    @Override public long jumpers(int d, boolean white, long men, long kings) {
+      long from = manJumps(d, white) ? men : 0;
+      return flyingCaptures() ? from : from | kings;
+    }
+    @Override public boolean manJumps(int d, boolean white) {
+      return rules.manCapturesBackward || !rules.manMovesForwardOnly || forward(d, white);
+    }
+    @Override public boolean slides() { return rules.kingFlying; }
+    @Override public boolean flyingCaptures() { return rules.kingFlying && rules.kingCaptureFlying; }
+    @Override public boolean mandatory() { return rules.mandatoryCapture; }
+    @Override public boolean longestOnly() { return rules.maxCaptureRule; }
+    @Override public boolean removeAtEnd() { return rules.removeCapturedAtEndOfChain; }
+    @Override public boolean kingMidChain() { return rules.continueCaptureAsKingWhenPromoted; }
+  }
+}
@@ -0,0 +1,136 @@
+package com.shashki.engine;
+
+import com.shashki.GameState;
+import com.shashki.Rules;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A small quantized network that replaces the hand-set evaluation when one is loaded.
+ *
+ * Inputs are one per piece kind and square ({@link Zobrist} kinds, Geometry squares),
+ * seen from both sides: black's view turns the board around and swaps the colours. The
+ * first layer sums the int16 weights of the pieces on the board into an accumulator per
+ * view, which GameState keeps in step with make/unmake, so a move only adds and
+ * subtracts the rows of the few squares it changes. Evaluation clamps both accumulators
+ * to [0, QA], side to move first, and takes one int8 dot product: about as cheap as
+ * counting material.
+ *
+ * Fixed point: accumulator units are 1/QA, output weights 1/QB, so the output is in
+ * 1/(QA*QB) of a man. File layout, big-endian: magic, rules flags, board size, hidden
+ * size, then the int16 first-layer weights by input, its int16 biases, the int8 output
+ * weights (side to move, then the other side) and the int32 output bias. Written by
+ * the NnueTrainer tool.
+ */
+public final class Nnue {
+  public static final int MAGIC = 0x534E4E31; // "SNN1"
+  public static final int INPUTS = 4 * 64;
+  public static final int QA = 127, QB = 64;
+
+  public final int n, hidden;
+  private final int flags;
+  private final short[] w1, b1;
+  private final byte[] w2;
+  private final int b2;
+  private final int[] mirror = new int[64]; // square seen from the other side
+
+  public Nnue(Rules rules, int hidden, short[] w1, short[] b1, byte[] w2, int b2) {
+    if (w1.length != INPUTS * hidden || b1.length != hidden || w2.length != 2 * hidden) {
+      throw new IllegalArgumentException("layer sizes don't match hidden=" + hidden);
+    }
+    this.n = rules.size;
+    this.flags = Tablebase.flags(rules);
+    this.hidden = hidden;
+    this.w1 = w1;
+    this.b1 = b1;
+    this.w2 = w2;
+    this.b2 = b2;
+    Geometry g = Geometry.of(n);
+    for (int s = 0; s < 64; s++) mirror[s] = g.xOf[s] < 0 ? s : g.square(n - 1 - g.xOf[s], n - 1 - g.yOf[s]);
+  }
+
+  /** Reads a network, or returns null if it was trained for other rules. */
+  public static Nnue read(InputStream in, Rules rules) throws IOException {
+    DataInputStream d = new DataInputStream(in);
+    if (d.readInt() != MAGIC || d.readInt() != Tablebase.flags(rules) || d.readInt() != rules.size) return null;
+    int hidden = d.readInt();
+    if (hidden <= 0 || hidden > 1024) throw new IOException("bad hidden size " + hidden);
+    short[] w1 = new short[INPUTS * hidden], b1 = new short[hidden];
+    byte[] w2 = new byte[2 * hidden];
+    for (int i = 0; i < w1.length; i++) w1[i] = d.readShort();
+    for (int i = 0; i < hidden; i++) b1[i] = d.readShort();
+    d.readFully(w2);
+    return new Nnue(rules, hidden, w1, b1, w2, d.readInt());
+  }
+
+  public void write(OutputStream out) throws IOException {
+    DataOutputStream d = new DataOutputStream(out);
+    d.writeInt(MAGIC);
+    d.writeInt(flags);
+    d.writeInt(n);
+    d.writeInt(hidden);
+    for (short v : w1) d.writeShort(v);
+    for (short v : b1) d.writeShort(v);
+    d.write(w2);
+    d.writeInt(b2);
+    d.flush();
+  }
+
+  /** Accumulator of both views for {@code s}, built from scratch: white's first, then black's. */
+  public void refresh(GameState s, short[] acc) {
+    System.arraycopy(b1, 0, acc, 0, hidden);
+    System.arraycopy(b1, 0, acc, hidden, hidden);
+    addAll(acc, Zobrist.W_MAN, s.whiteMen);
+    addAll(acc, Zobrist.W_KING, s.whiteKings);
+    addAll(acc, Zobrist.B_MAN, s.blackMen);
+    addAll(acc, Zobrist.B_KING, s.blackKings);
+  }
+
+  public void add(short[] acc, int kind, int sq) {
+    short[] w = w1;
+    int h = hidden, a = (kind * 64 + sq) * h, b = ((kind ^ 2) * 64 + mirror[sq]) * h;
+    for (int i = 0; i < h; i++) acc[i] += w[a + i];
+    for (int i = 0; i < h; i++) acc[h + i] += w[b + i];
+  }
+
+  public void remove(short[] acc, int kind, int sq) {
+    short[] w = w1;
+    int h = hidden, a = (kind * 64 + sq) * h, b = ((kind ^ 2) * 64 + mirror[sq]) * h;
+    for (int i = 0; i < h; i++) acc[i] -= w[a + i];
+    for (int i = 0; i < h; i++) acc[h + i] -= w[b + i];
+  }
+
+  /** A piece of {@code from} kind leaves {@code f} and lands on {@code t} as {@code to} kind. */
+  public void move(short[] acc, int from, int f, int to, int t) {
+    short[] w = w1;
+    int h = hidden;
+    int af = (from * 64 + f) * h, bf = ((from ^ 2) * 64 + mirror[f]) * h;
+    int at = (to * 64 + t) * h, bt = ((to ^ 2) * 64 + mirror[t]) * h;
+    for (int i = 0; i < h; i++) acc[i] += w[at + i] - w[af + i];
+    for (int i = 0; i < h; i++) acc[h + i] += w[bt + i] - w[bf + i];
+  }
+
+  public void addAll(short[] acc, int kind, long bb) {
+    for (; bb != 0; bb &= bb - 1) add(acc, kind, Long.numberOfTrailingZeros(bb));
+  }
+
+  public void removeAll(short[] acc, int kind, long bb) {
+    for (; bb != 0; bb &= bb - 1) remove(acc, kind, Long.numberOfTrailingZeros(bb));
+  }
+
+  /** Score of {@code s} in thousandths of a man for the side to move; needs its accumulator. */
+  public int evaluate(GameState s) {
+    short[] acc = s.acc;
+    byte[] w = w2;
+    int h = hidden, us = s.whiteTurn ? 0 : h, them = h - us;
+    // one loop per view with min/max instead of branches, which the JIT can vectorize
+    int out = b2;
+    for (int i = 0; i < h; i++) out += Math.min(Math.max(acc[us + i], 0), QA) * w[i];
+    for (int i = 0; i < h; i++) out += Math.min(Math.max(acc[them + i], 0), QA) * w[h + i];
+    return (int) (out * 1000L / (QA * QB));
+  }
+}
@@ -0,0 +1,97 @@
+package com.shashki.engine;
+
+import com.shashki.GameState;
+import com.shashki.Move;
+import com.shashki.Rules;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Opening book read straight from a memory-mapped file: nothing but the mapping is
+ * held on the heap, and a lookup is a binary search over the sorted position keys.
+ *
+ * File layout: 24-byte header (magic, rules flags, board size, entry count, move count,
+ * reserved), then entries of 16 bytes sorted by {@link GameState#key} (key, first move,
+ * move count), then moves as ints: {@link Search#code} in the top 12 bits and the weight
+ * in the low 20. Written by the BookBuilder tool.
+ */
+public final class OpeningBook {
+  public static final int MAGIC = 0x534F4231; // "SOB1"
+  public static final int HEADER = 24, ENTRY = 16;
+  public static final int MAX_WEIGHT = 0xFFFFF;
+
+  private final MappedByteBuffer buf;
+  private final int entries, moveBase;
+
+  private OpeningBook(MappedByteBuffer buf) {
+    this.buf = buf;
+    this.entries = buf.getInt(12);
+    this.moveBase = HEADER + entries * ENTRY;
+  }
+
+  /** Maps {@code file} if it exists and was built for {@code rules}, else returns null. */
+  public static OpeningBook open(File file, Rules rules) throws IOException {
+    if (!file.isFile()) return null;
+    MappedByteBuffer buf;
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel ch = raf.getChannel()) {
+      buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+    }
+    if (buf.getInt(0) != MAGIC || buf.getInt(4) != Tablebase.flags(rules) || buf.getInt(8) != rules.size) return null;
+    return new OpeningBook(buf);
+  }
+
+  public int size() { return entries; }
+
+  /**
+   * A book move for {@code s} out of its legal {@code moves}, drawn at random in
+   * proportion to the weights, or null when the position isn't in the book.
+   */
+  public Move pick(GameState s, List<Move> moves, Random rng) {
+    int e = find(s.key);
+    if (e < 0) return null;
+    int first = buf.getInt(HEADER + e * ENTRY + 8), count = buf.getInt(HEADER + e * ENTRY + 12);
+    long total = 0;
+    for (int i = 0; i < count; i++) {
+      int v = moveAt(first + i);
+      if (legal(s, moves, v) != null) total += v & MAX_WEIGHT;
+    }
+    if (total == 0) return null;
+    long r = (long) (rng.nextDouble() * total);
+    for (int i = 0; i < count; i++) {
+      int v = moveAt(first + i);
+      Move m = legal(s, moves, v);
+      if (m == null) continue;
+      r -= v & MAX_WEIGHT;
+      if (r < 0) return m;
+    }
+    return null;
+  }
+
+  private int moveAt(int i) { return buf.getInt(moveBase + i * 4); }
+
+  // the legal move a book entry stands for; a stale or colliding entry matches nothing
+  private static Move legal(GameState s, List<Move> moves, int v) {
+    int code = v >>> 20;
+    for (Move m : moves) if (Search.code(s, m) == code) return m;
+    return null;
+  }
+
+  // entry index of key, or -1
+  private int find(long key) {
+    int lo = 0, hi = entries - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      long k = buf.getLong(HEADER + mid * ENTRY);
+      if (k < key) lo = mid + 1;
+      else if (k > key) hi = mid - 1;
+      else return mid;
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,37 @@
+package com.shashki.engine;
+
+/**
+ * A whole move in one long, for the search's move buffers:
+ *
+ * <pre>
+ * bits  0..5   to square   (Geometry bit index)
+ * bits  6..11  from square
+ * bit   12     promotion
+ * bits 13..63  captured squares, as a Geometry mask shifted right by H
+ * </pre>
+ *
+ * The low 12 bits are the code {@link Search#code} gives the same move, as stored in the
+ * transposition table. A captured piece is never on the first row (nothing lands beyond
+ * it), which takes up bits 0..H-1 of the layout, so the shifted mask of a 10x10 board
+ * still fits. The landings of a multi-jump aren't kept: the search only needs what a
+ * move takes, and GameState lists chains that take the same pieces and end alike once.
+ */
+public final class PackedMove {
+  public static final int CAPTURE_SHIFT = 13;
+  public static final long PROMOTES = 1L << 12;
+
+  private PackedMove() {}
+
+  public static long of(int from, int to, boolean promotes, long captured, int half) {
+    return to | (long) from << 6 | (promotes ? PROMOTES : 0) | (captured >>> half) << CAPTURE_SHIFT;
+  }
+
+  public static int from(long p) { return (int) (p >>> 6) & 63; }
+  public static int to(long p) { return (int) p & 63; }
+  public static int code(long p) { return (int) p & 0xFFF; }
+  public static boolean promotes(long p) { return (p & PROMOTES) != 0; }
+  public static int captureCount(long p) { return Long.bitCount(p >>> CAPTURE_SHIFT); }
+
+  /** Captured squares as a Geometry mask. */
+  public static long captured(long p, int half) { return (p >>> CAPTURE_SHIFT) << half; }
+}
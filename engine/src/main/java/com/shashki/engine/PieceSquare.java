@@ -0,0 +1,59 @@
+package com.shashki.engine;
+
+/**
+ * Positional bonus of a piece on a square, in thousandths of a man, indexed like
+ * {@link Zobrist#PIECE}: white values are positive, black ones negative, so the sum over
+ * the board is the white-minus-black score that GameState keeps in step with its moves.
+ *
+ * Men gain as they advance, more so near the promotion row, and get a bonus for staying
+ * on the back row, where they stop enemy men from promoting; a man on the side edge has
+ * fewer moves. Kings want the centre and the long diagonal.
+ */
+public final class PieceSquare {
+  private static final PieceSquare[] CACHE = new PieceSquare[Geometry.MAX_N + 1];
+
+  public final int[][] value = new int[4][64];
+
+  public static synchronized PieceSquare of(int n) {
+    if (CACHE[n] == null) CACHE[n] = new PieceSquare(Geometry.of(n));
+    return CACHE[n];
+  }
+
+  private PieceSquare(Geometry g) {
+    int n = g.n;
+    for (int s = 0; s < 64; s++) {
+      int x = g.xOf[s], y = g.yOf[s];
+      if (x < 0) continue;
+      // as seen by white, who starts at the bottom; black's squares are turned around
+      int w = man(n, x, y), b = man(n, n - 1 - x, n - 1 - y);
+      value[Zobrist.W_MAN][s] = w;
+      value[Zobrist.B_MAN][s] = -b;
+      value[Zobrist.W_KING][s] = king(n, x, y);
+      value[Zobrist.B_KING][s] = -king(n, n - 1 - x, n - 1 - y);
+    }
+  }
+
+  private static int man(int n, int x, int y) {
+    int r = n - 1 - y; // rows advanced
+    int v = r == 0 ? 40 : 10 * r + (r >= n - 3 ? 30 : 0);
+    if (x == 0 || x == n - 1) v -= 15;
+    else if (x >= 2 && x <= n - 3 && r >= 2) v += 20;
+    return v;
+  }
+
+  private static int king(int n, int x, int y) {
+    int edge = Math.min(Math.min(x, n - 1 - x), Math.min(y, n - 1 - y));
+    return 10 * edge + (x + y == n - 1 ? 50 : 0);
+  }
+
+  /** Sum of the values of every square in {@code bb}. */
+  public int sum(int kind, long bb) {
+    int[] t = value[kind];
+    int v = 0;
+    while (bb != 0) {
+      v += t[Long.numberOfTrailingZeros(bb)];
+      bb &= bb - 1;
+    }
+    return v;
+  }
+}
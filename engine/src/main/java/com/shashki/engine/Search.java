@@ -0,0 +1,376 @@
+package com.shashki.engine;
+
+import com.shashki.GameState;
+import com.shashki.Move;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Alpha-beta searcher over its own copy of the position. Any number of them can share
+ * one {@link TranspositionTable} and one {@link Clock}; that is all a Lazy SMP helper needs.
+ */
+public final class Search {
+  public static final int INF = 1_000_000_000;
+  public static final int WIN = 1_000_000;
+  public static final int MAX_DEPTH = 64;
+  private static final int MAX_PLY = 128;
+  // quiescence delta margin, for what the evaluation adds on top of material
+  private static final int DELTA = 500;
+  private static final int NONE = Integer.MIN_VALUE;
+
+  /** Deadline and stop flag shared by all threads of one search. */
+  public static final class Clock {
+    public volatile boolean stop;
+    public long deadline = Long.MAX_VALUE;
+    public long maxNodes = Long.MAX_VALUE; // counted on the main thread
+  }
+
+  /** A root move with its score and the line expected to follow it. */
+  public static final class Line {
+    public final Move move;
+    public final int score;
+    public final List<Move> pv;
+
+    Line(Move move, int score, List<Move> pv) {
+      this.move = move;
+      this.score = score;
+      this.pv = pv;
+    }
+  }
+
+  private final GameState pos;
+  private final TranspositionTable tt;
+  private final Evaluator eval;
+  private final Clock clock;
+
+  public Tablebase tablebase; // optional, probed below the root
+  public long nodes;
+  // the main thread never aborts its first iteration, so there is a move to fall back on
+  private boolean canStop;
+  private final boolean helper;
+
+  // move ordering: killers per ply, history by from/to; packed move buffers and their scores per ply
+  private final int[][] killers = new int[MAX_PLY][2];
+  private final int[] history = new int[64 * 64];
+  private final long[][] lists = new long[MAX_PLY][];
+  private final int[][] order = new int[MAX_PLY][];
+
+  // result of the last completed iteration
+  public Move best;
+  public int score, depth;
+  public Runnable onIteration; // main thread only, called after each completed iteration
+  // root moves scored exactly, best first; the others are only shown to be worse than all of them
+  public int multiPv = 1;
+  private List<Move> root;
+  private int[] rootScores = new int[0], kthScratch = new int[0];
+
+  public Search(GameState root, TranspositionTable tt, Evaluator eval, Clock clock, boolean helper) {
+    this.pos = new GameState(root);
+    pos.attach(eval.network);
+    this.tt = tt;
+    this.eval = eval;
+    this.clock = clock;
+    this.helper = helper;
+    this.canStop = helper;
+  }
+
+  /**
+   * Iterative deepening over {@code moves}, which is reordered in place. Ends after
+   * {@code maxDepth}, on a forced result or when the clock stops; the main thread also
+   * stops once half its time is gone, since the next iteration would overrun.
+   * With {@link #multiPv} above one, {@code moves} is left sorted by score after each
+   * iteration and {@link #lines} has the best of them.
+   */
+  public void iterate(List<Move> moves, int fromDepth, int maxDepth) {
+    long start = System.nanoTime();
+    if (!helper) sort(moves, 0, 0); // helpers keep the rotated order they were given
+    if (best == null) best = moves.get(0);
+    root = moves;
+    int lines = Math.max(1, Math.min(multiPv, moves.size()));
+    if (rootScores.length < moves.size()) { rootScores = new int[moves.size()]; kthScratch = new int[moves.size()]; }
+    for (int d = fromDepth; d <= maxDepth; d++) {
+      canStop = helper || d > fromDepth;
+      moves.remove(best);
+      moves.add(0, best);
+
+      int bestScore = -INF;
+      Move iterBest = null;
+      for (int i = 0; i < moves.size(); i++) {
+        Move m = moves.get(i);
+        // a move only has to be searched exactly if it may make the top lines
+        int alpha = lines > 1 ? kth(i, lines) : bestScore;
+        pos.make(m);
+        int sc = -negamax(d - 1, 1, -INF, -alpha);
+        pos.unmake(m);
+        if (stopped()) break;
+        rootScores[i] = sc;
+        if (sc > bestScore) { bestScore = sc; iterBest = m; }
+      }
+      if (stopped()) return; // keep the last completed iteration
+      if (lines > 1) sortRoot(moves, rootScores);
+      best = iterBest; score = bestScore; depth = d;
+      if (onIteration != null) onIteration.run();
+
+      if (Math.abs(bestScore) > WIN - 1000) return; // forced result found
+      // a deeper iteration takes several times longer than this one, don't start it late;
+      // no deadline is MAX_VALUE, and MAX_VALUE - start overflows when nanoTime() is negative
+      if (!helper && clock.deadline != Long.MAX_VALUE && (System.nanoTime() - start) * 2 > clock.deadline - start) return;
+    }
+  }
+
+  private boolean stopped() { return canStop && clock.stop; }
+
+  // k-th highest of the first n root scores, or -INF while there are fewer than k
+  private int kth(int n, int k) {
+    if (n < k) return -INF;
+    int[] t = kthScratch;
+    System.arraycopy(rootScores, 0, t, 0, n);
+    for (int j = 0; j < k; j++) {
+      int hi = j;
+      for (int i = j + 1; i < n; i++) if (t[i] > t[hi]) hi = i;
+      int x = t[j]; t[j] = t[hi]; t[hi] = x;
+    }
+    return t[k - 1];
+  }
+
+  // best first; stable, so the best move of the iteration stays ahead of its ties
+  private static void sortRoot(List<Move> moves, int[] sc) {
+    for (int i = 1; i < moves.size(); i++) {
+      Move m = moves.get(i);
+      int v = sc[i], j = i;
+      for (; j > 0 && sc[j - 1] < v; j--) { sc[j] = sc[j - 1]; moves.set(j, moves.get(j - 1)); }
+      sc[j] = v;
+      moves.set(j, m);
+    }
+  }
+
+  /** Best line of the last iteration: the best move, then hash moves as far as they go. */
+  public List<Move> pv() { return pv(best); }
+
+  /** The best {@link #multiPv} root moves of the last iteration, best first. */
+  public List<Line> lines() {
+    List<Line> out = new ArrayList<>();
+    int n = best == null ? 0 : Math.max(1, Math.min(multiPv, root.size()));
+    if (n == 1) out.add(new Line(best, score, pv(best)));
+    else for (int i = 0; i < n; i++) out.add(new Line(root.get(i), rootScores[i], pv(root.get(i))));
+    return out;
+  }
+
+  // the given root move, then hash moves
+  private List<Move> pv(Move first) {
+    List<Move> line = new ArrayList<>();
+    if (first == null) return line;
+    line.add(first);
+    pos.make(first);
+    while (line.size() < depth) {
+      long e = tt.probe(pos.key);
+      Move next = null;
+      if (e != 0) for (Move m : pos.legalSequences()) if (code(pos, m) == TranspositionTable.move(e)) { next = m; break; }
+      if (next == null) break;
+      line.add(next);
+      pos.make(next);
+    }
+    for (int i = line.size() - 1; i >= 0; i--) pos.unmake(line.get(i));
+    return line;
+  }
+
+  private int negamax(int depth, int ply, int alpha, int beta) {
+    if (depth <= 0) return quiesce(ply, alpha, beta);
+    if ((++nodes & 1023) == 0) checkTime();
+    if (stopped()) return 0;
+    int known = probe(ply);
+    if (known != NONE) return known;
+
+    int alpha0 = alpha;
+    int ttMove = 0;
+    long e = tt.probe(pos.key);
+    if (e != 0) {
+      ttMove = TranspositionTable.move(e);
+      if (TranspositionTable.depth(e) >= depth) {
+        int sc = fromTT(TranspositionTable.score(e), ply);
+        int bound = TranspositionTable.bound(e);
+        if (bound == TranspositionTable.EXACT) return sc;
+        if (bound == TranspositionTable.LOWER && sc >= beta) return sc;
+        if (bound == TranspositionTable.UPPER && sc <= alpha) return sc;
+      }
+    }
+
+    int n = generate(ply);
+    if (n == 0) return -WIN + ply; // side to move has no moves -> loses
+    long[] moves = lists[ply];
+    sort(moves, n, ply, ttMove);
+
+    int best = -INF;
+    long bestMove = 0;
+    for (int i = 0; i < n; i++) {
+      long m = moves[i];
+      pos.make(m);
+      int score = -negamax(depth-1, ply+1, -beta, -alpha);
+      pos.unmake(m);
+      if (stopped()) return 0;
+      if (score > best) { best = score; bestMove = m; }
+      if (best > alpha) alpha = best;
+      if (alpha >= beta) {
+        if (PackedMove.captureCount(m) == 0) cutoff(PackedMove.code(m), depth, ply);
+        break;
+      }
+    }
+
+    int bound = best <= alpha0 ? TranspositionTable.UPPER
+      : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+    tt.store(pos.key, depth, bound, toTT(best, ply), PackedMove.code(bestMove));
+    return best;
+  }
+
+  /**
+   * Plays out pending captures until the position is quiet, so leaves are never
+   * evaluated in the middle of an exchange. Where capturing is optional the side to move
+   * may stand pat on the static score; where it is forced it may not, but a capture that
+   * can't lift the static score near alpha even with a margin is still skipped.
+   */
+  private int quiesce(int ply, int alpha, int beta) {
+    if ((++nodes & 1023) == 0) checkTime();
+    if (stopped()) return 0;
+    int known = probe(ply);
+    if (known != NONE) return known;
+
+    int n = generate(ply);
+    if (n == 0) return -WIN + ply;
+    int stand = eval.evaluate(pos);
+    if (ply >= MAX_PLY - 1) return stand;
+    boolean forced = pos.gen.mandatory();
+    long[] moves = lists[ply];
+    if (!hasCapture(moves, n)) return stand;
+
+    int best = -INF;
+    if (!forced) {
+      if (stand >= beta) return stand;
+      if (stand > alpha) alpha = stand;
+      best = stand;
+    }
+    sort(moves, n, ply, 0);
+    for (int i = 0; i < n; i++) {
+      long m = moves[i];
+      if (PackedMove.captureCount(m) == 0) break; // sorted: captures come first
+      // delta pruning: even winning all of it back doesn't reach alpha
+      int optimistic = stand + gain(m) + DELTA;
+      if (optimistic <= alpha) { if (optimistic > best) best = optimistic; continue; }
+      pos.make(m);
+      int score = -quiesce(ply + 1, -beta, -alpha);
+      pos.unmake(m);
+      if (stopped()) return 0;
+      if (score > best) best = score;
+      if (best > alpha) alpha = best;
+      if (alpha >= beta) break;
+    }
+    return best;
+  }
+
+  // legal moves of the position into this ply's buffer, which only grows; returns the count
+  private int generate(int ply) {
+    int n = pos.legalPacked();
+    long[] buf = lists[ply];
+    if (buf == null || buf.length < n) buf = lists[ply] = new long[Math.max(n, 64)];
+    for (int i = 0; i < n; i++) buf[i] = pos.packed(i);
+    return n;
+  }
+
+  private static boolean hasCapture(long[] moves, int n) {
+    for (int i = 0; i < n; i++) if (PackedMove.captureCount(moves[i]) > 0) return true;
+    return false;
+  }
+
+  // material won by a move: the pieces it takes plus a promotion
+  private int gain(long m) {
+    long taken = PackedMove.captured(m, pos.geo.half), kings = taken & (pos.whiteKings | pos.blackKings);
+    int g = PackedMove.promotes(m) ? eval.king - eval.man : 0;
+    return g + Long.bitCount(kings) * eval.king + Long.bitCount(taken & ~kings) * eval.man;
+  }
+
+  // exact score from the tablebase; wins further away score lower, like longer mates
+  private int probe(int ply) {
+    if (tablebase == null) return NONE;
+    int v = tablebase.probe(pos);
+    if (v < 0) return NONE;
+    int dist = v >> 2;
+    switch (v & 3) {
+      case Tablebase.WIN:  return WIN - ply - dist;
+      case Tablebase.LOSS: return -WIN + ply + dist;
+      default:             return 0;
+    }
+  }
+
+  private void checkTime() {
+    if (!helper && canStop && (System.nanoTime() > clock.deadline || nodes >= clock.maxNodes)) clock.stop = true;
+  }
+
+  /**
+   * Orders the first {@code n} moves in place: hash move, captures by count, promotions,
+   * the two killers of this ply, then the rest by history. Insertion sort, the lists are short.
+   */
+  private void sort(long[] moves, int n, int ply, int ttMove) {
+    int[] sc = scores(ply, n);
+    for (int i = 0; i < n; i++) {
+      long m = moves[i];
+      int v = rank(m, ply, ttMove);
+      // shift the tail right, both arrays together
+      int j = i;
+      for (; j > 0 && sc[j - 1] < v; j--) { sc[j] = sc[j - 1]; moves[j] = moves[j - 1]; }
+      sc[j] = v;
+      moves[j] = m;
+    }
+  }
+
+  // the same for the root list
+  private void sort(List<Move> moves, int ply, int ttMove) {
+    int n = moves.size();
+    int[] sc = scores(ply, n);
+    for (int i = 0; i < n; i++) {
+      Move m = moves.get(i);
+      int v = rank(pos.pack(m), ply, ttMove);
+      int j = i;
+      for (; j > 0 && sc[j - 1] < v; j--) { sc[j] = sc[j - 1]; moves.set(j, moves.get(j - 1)); }
+      sc[j] = v;
+      moves.set(j, m);
+    }
+  }
+
+  private int[] scores(int ply, int n) {
+    if (order[ply] == null || order[ply].length < n) order[ply] = new int[Math.max(n, 64)];
+    return order[ply];
+  }
+
+  private int rank(long m, int ply, int ttMove) {
+    int c = PackedMove.code(m), caps = PackedMove.captureCount(m);
+    boolean promotes = PackedMove.promotes(m);
+    if (c == ttMove) return 1 << 30;
+    if (caps > 0) return (1 << 28) + (caps << 8) + (promotes ? 1 : 0);
+    if (promotes) return 1 << 27;
+    if (c == killers[ply][0]) return (1 << 26) + 1;
+    if (c == killers[ply][1]) return 1 << 26;
+    return history[c];
+  }
+
+  // a quiet move refuted the line: remember it for this ply and for its squares
+  private void cutoff(int c, int depth, int ply) {
+    int[] k = killers[ply];
+    if (k[0] != c) { k[1] = k[0]; k[0] = c; }
+    int h = history[c] += depth * depth;
+    if (h > 1 << 24) for (int i = 0; i < history.length; i++) history[i] >>= 1;
+  }
+
+  // from/to squares, as stored in the transposition table
+  public static int code(GameState s, Move m) {
+    return (s.geo.square(m.fx, m.fy) << 6) | s.geo.square(m.tx, m.ty);
+  }
+
+  // win scores are stored relative to the node, not the root
+  private static int toTT(int sc, int ply) {
+    return sc > WIN - 1000 ? sc + ply : sc < -WIN + 1000 ? sc - ply : sc;
+  }
+
+  private static int fromTT(int sc, int ply) {
+    return sc > WIN - 1000 ? sc - ply : sc < -WIN + 1000 ? sc + ply : sc;
+  }
+}
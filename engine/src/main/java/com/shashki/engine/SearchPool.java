@@ -0,0 +1,127 @@
+package com.shashki.engine;
+
+import com.shashki.GameState;
+import com.shashki.Move;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Lazy SMP: the main search runs on the calling thread while {@code threads - 1} helpers
+ * search the same position on their own copies. They only talk through the shared
+ * transposition table, which fills faster and lets the main thread skip subtrees.
+ * With one thread nothing is started and the search is deterministic.
+ */
+public final class SearchPool {
+  public static final class Result {
+    public Move best;
+    public int score, depth;
+    public long nodes, nanos;
+  }
+
+  /** Progress of the main thread, after every completed iteration; {@code lines} are best first. */
+  public interface Listener {
+    void iteration(int depth, long nodes, long nanos, List<Search.Line> lines);
+  }
+
+  public final int threads;
+  public Tablebase tablebase; // handed to every searcher, null for none
+  public long maxNodes;       // stop after about this many nodes on the main thread, 0 for no limit
+  public Listener listener;
+  public int multiPv = 1;     // root moves the main thread scores exactly (see Search#multiPv)
+  private ExecutorService helpers;
+  private volatile Search.Clock current;
+
+  public SearchPool(int threads) {
+    this.threads = Math.max(1, threads);
+  }
+
+  /** Searches up to {@code maxDepth}, or until {@code budgetMs} runs out when it's positive. */
+  public Result search(GameState s, List<Move> moves, TranspositionTable tt, Evaluator eval,
+                       int maxDepth, long budgetMs) {
+    return search(s, moves, tt, eval, maxDepth, budgetMs, new Search.Clock());
+  }
+
+  /**
+   * The same with a clock of the caller's: setting its stop flag ends the search from
+   * another thread, also before it has started.
+   */
+  public Result search(GameState s, List<Move> moves, TranspositionTable tt, Evaluator eval,
+                       int maxDepth, long budgetMs, Search.Clock clock) {
+    long start = System.nanoTime();
+    if (budgetMs > 0) clock.deadline = start + budgetMs * 1_000_000L;
+    if (maxNodes > 0) clock.maxNodes = maxNodes;
+    current = clock;
+
+    List<Search> workers = new ArrayList<>();
+    List<Future<?>> running = new ArrayList<>();
+    for (int i = 1; i < threads; i++) {
+      Search h = new Search(s, tt, eval, clock, true);
+      h.tablebase = tablebase;
+      // different root order and odd depths, so helpers don't all walk the main line
+      List<Move> own = new ArrayList<>(moves);
+      Collections.rotate(own, i);
+      int from = 1 + (i & 1);
+      workers.add(h);
+      running.add(pool().submit(() -> h.iterate(own, from, Search.MAX_DEPTH)));
+    }
+
+    Search main = new Search(s, tt, eval, clock, false);
+    main.tablebase = tablebase;
+    main.multiPv = multiPv;
+    Listener l = listener;
+    if (l != null) main.onIteration = () -> {
+      long nodes = main.nodes;
+      for (Search h : workers) nodes += h.nodes; // racy, good enough for progress
+      l.iteration(main.depth, nodes, System.nanoTime() - start, main.lines());
+    };
+    main.iterate(moves, 1, maxDepth);
+    clock.stop = true;
+    current = null;
+    for (Future<?> f : running) {
+      try {
+        f.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+
+    Result r = new Result();
+    r.best = main.best;
+    r.score = main.score;
+    r.depth = main.depth;
+    r.nodes = main.nodes;
+    for (Search h : workers) r.nodes += h.nodes;
+    r.nanos = System.nanoTime() - start;
+    return r;
+  }
+
+  /** Ends the running search from another thread; it still returns its best move so far. */
+  public void stop() {
+    Search.Clock c = current;
+    if (c != null) c.stop = true;
+  }
+
+  private synchronized ExecutorService pool() {
+    if (helpers == null) {
+      helpers = Executors.newFixedThreadPool(threads - 1, r -> {
+        Thread t = new Thread(r, "AI-helper");
+        t.setDaemon(true);
+        return t;
+      });
+    }
+    return helpers;
+  }
+
+  public synchronized void shutdown() {
+    if (helpers != null) helpers.shutdownNow();
+    helpers = null;
+  }
+}
@@ -0,0 +1,215 @@
+package com.shashki.engine;
+
+import com.shashki.GameState;
+import com.shashki.Rules;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Endgame tables for 8x8 boards: win/loss/draw and distance to win for every position
+ * with white to move (black to move is probed on the mirrored board), one file per
+ * material signature. Files are memory-mapped read-only, so the OS pages in only
+ * what the search touches.
+ *
+ * Positions are numbered by a perfect index over the 32 dark squares: white men, white
+ * kings, black men and black kings are ranked in turn as combinations of the squares the
+ * earlier groups left free. Men on their promotion row can't occur and are marked illegal.
+ *
+ * File layout: 16-byte header (magic, rules flags, position count, max distance), then
+ * 2 bits of result per position, four to a byte, then the distance of every position: one
+ * byte each, or two (big-endian) when the max distance doesn't fit in a byte.
+ */
+public final class Tablebase {
+  public static final int DRAW = 0, WIN = 1, LOSS = 2, ILLEGAL = 3;
+  public static final int MAGIC = 0x53544231; // "STB1"
+  public static final int HEADER = 16;
+  public static final int MAX_PIECES = 8;
+  public static final long TOP = 0xFL, BOTTOM = 0xFL << 28; // rows of the 32-square masks; white promotes on top
+
+  // squares 0..31 in row-major order of the dark squares, as bits of the 8x8 Geometry
+  private static final Geometry G = Geometry.of(8);
+  private static final int[] BIT = new int[32];
+  private static final int[] TB = new int[64];
+  private static final long[][] C = new long[33][MAX_PIECES + 1];
+
+  static {
+    Arrays.fill(TB, -1);
+    for (int s = 0; s < 32; s++) {
+      int y = s >> 2, x = 2 * (s & 3) + 1 - (y & 1);
+      BIT[s] = G.square(x, y);
+      TB[BIT[s]] = s;
+    }
+    for (int n = 0; n <= 32; n++) {
+      C[n][0] = 1;
+      for (int k = 1; k <= MAX_PIECES && n > 0; k++) C[n][k] = C[n - 1][k - 1] + C[n - 1][k];
+    }
+  }
+
+  private final int maxPieces;
+  private final MappedByteBuffer[] tables;
+  private final int flags; // of the rules the tables were opened for
+
+  private Tablebase(int maxPieces, MappedByteBuffer[] tables, int flags) {
+    this.maxPieces = maxPieces;
+    this.tables = tables;
+    this.flags = flags;
+  }
+
+  /**
+   * Maps every table in {@code dir} that was built for {@code rules}. Returns null if
+   * there is none, so callers can keep a null check as "no tablebase".
+   */
+  public static Tablebase open(File dir, Rules rules) throws IOException {
+    if (rules.size != 8) return null;
+    File[] files = dir.listFiles();
+    if (files == null) return null;
+    int flags = flags(rules), max = 0;
+    MappedByteBuffer[] tables = new MappedByteBuffer[MAX_PIECES * MAX_PIECES * MAX_PIECES * MAX_PIECES];
+    for (File f : files) {
+      String n = f.getName();
+      if (!n.matches("\\d{4}\\.stb")) continue;
+      int wm = n.charAt(0) - '0', wk = n.charAt(1) - '0', bm = n.charAt(2) - '0', bk = n.charAt(3) - '0';
+      if (wm + wk + bm + bk > MAX_PIECES) continue;
+      MappedByteBuffer buf;
+      try (RandomAccessFile raf = new RandomAccessFile(f, "r"); FileChannel ch = raf.getChannel()) {
+        buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()); // stays valid after close
+      }
+      if (buf.getInt(0) != MAGIC || buf.getInt(4) != flags || buf.getInt(8) != size(wm, wk, bm, bk)) continue;
+      tables[slot(wm, wk, bm, bk)] = buf;
+      max = Math.max(max, wm + wk + bm + bk);
+    }
+    return max == 0 ? null : new Tablebase(max, tables, flags);
+  }
+
+  public int maxPieces() { return maxPieces; }
+
+  /**
+   * Looks up {@code s} for its side to move: {@code dist << 2 | result}, or -1 if the
+   * position isn't covered (too many pieces, missing table, other rules or a chain in progress).
+   */
+  public int probe(GameState s) {
+    if (s.N != 8 || s.mustContinueChain) return -1;
+    if (Long.bitCount(s.whiteMen | s.whiteKings | s.blackMen | s.blackKings) > maxPieces) return -1;
+    if (flags(s.rules) != flags) return -1;
+    long wm = toTb(s.whiteMen), wk = toTb(s.whiteKings), bm = toTb(s.blackMen), bk = toTb(s.blackKings);
+    if (!s.whiteTurn) {
+      long m = mirror(bm), k = mirror(bk);
+      bm = mirror(wm); bk = mirror(wk); wm = m; wk = k;
+    }
+    if ((wm | wk) == 0) return LOSS;
+    if ((bm | bk) == 0) return WIN; // can't happen in play, the side without pieces has just lost
+    MappedByteBuffer t = tables[slot(Long.bitCount(wm), Long.bitCount(wk), Long.bitCount(bm), Long.bitCount(bk))];
+    if (t == null) return -1;
+    long i = index(wm, wk, bm, bk);
+    int r = (t.get(HEADER + (int) (i >> 2)) >> ((int) (i & 3) * 2)) & 3;
+    int dist = HEADER + (int) ((t.getInt(8) + 3L) >> 2);
+    int d = t.getInt(12) > 0xFF ? t.getShort(dist + 2 * (int) i) & 0xFFFF : t.get(dist + (int) i) & 0xFF;
+    return d << 2 | r;
+  }
+
+  // --- indexing, shared with the generator ---
+
+  public static int slot(int wm, int wk, int bm, int bk) {
+    return ((wm * MAX_PIECES + wk) * MAX_PIECES + bm) * MAX_PIECES + bk;
+  }
+
+  public static String fileName(int wm, int wk, int bm, int bk) {
+    return "" + wm + wk + bm + bk + ".stb";
+  }
+
+  /** Rule switches that change the game tree; a table only serves the rules it was built for. */
+  public static int flags(Rules r) {
+    return (r.mandatoryCapture ? 1 : 0) | (r.maxCaptureRule ? 2 : 0) | (r.removeCapturedAtEndOfChain ? 4 : 0)
+      | (r.manMovesForwardOnly ? 8 : 0) | (r.manCapturesBackward ? 16 : 0) | (r.kingFlying ? 32 : 0)
+      | (r.kingCaptureFlying ? 64 : 0) | (r.continueCaptureAsKingWhenPromoted ? 128 : 0);
+  }
+
+  public static int size(int wm, int wk, int bm, int bk) {
+    long n = C[32][wm] * C[32 - wm][wk] * C[32 - wm - wk][bm] * C[32 - wm - wk - bm][bk];
+    if (n > Integer.MAX_VALUE) throw new IllegalArgumentException("table too large");
+    return (int) n;
+  }
+
+  /** Geometry bitboard of an 8x8 position to a 32-bit square mask. */
+  public static long toTb(long bb) {
+    long m = 0;
+    while (bb != 0) {
+      m |= 1L << TB[Long.numberOfTrailingZeros(bb)];
+      bb &= bb - 1;
+    }
+    return m;
+  }
+
+  public static long fromTb(long m) {
+    long bb = 0;
+    while (m != 0) {
+      bb |= 1L << BIT[Long.numberOfTrailingZeros(m)];
+      m &= m - 1;
+    }
+    return bb;
+  }
+
+  /** Square s to 31 - s: the board turned around, as seen by the other side. */
+  public static long mirror(long m) {
+    return Long.reverse(m) >>> 32;
+  }
+
+  public static long index(long wm, long wk, long bm, long bk) {
+    long i = rank(wm, 0);
+    i = i * C[32 - Long.bitCount(wm)][Long.bitCount(wk)] + rank(wk, wm);
+    long used = wm | wk;
+    i = i * C[32 - Long.bitCount(used)][Long.bitCount(bm)] + rank(bm, used);
+    used |= bm;
+    return i * C[32 - Long.bitCount(used)][Long.bitCount(bk)] + rank(bk, used);
+  }
+
+  /** Inverse of {@link #index}: fills {@code out} with the four square masks. */
+  public static void squares(long i, int wm, int wk, int bm, int bk, long[] out) {
+    long nWk = C[32 - wm][wk], nBm = C[32 - wm - wk][bm], nBk = C[32 - wm - wk - bm][bk];
+    long rBk = i % nBk; i /= nBk;
+    long rBm = i % nBm; i /= nBm;
+    long rWk = i % nWk; i /= nWk;
+    out[0] = unrank(i, wm, 0);
+    out[1] = unrank(rWk, wk, out[0]);
+    long used = out[0] | out[1];
+    out[2] = unrank(rBm, bm, used);
+    out[3] = unrank(rBk, bk, used | out[2]);
+  }
+
+  // combinatorial number system over the squares not in used
+  private static long rank(long set, long used) {
+    long r = 0;
+    int k = 1;
+    while (set != 0) {
+      int s = Long.numberOfTrailingZeros(set);
+      set &= set - 1;
+      r += C[s - Long.bitCount(used & ((1L << s) - 1))][k++];
+    }
+    return r;
+  }
+
+  private static long unrank(long r, int k, long used) {
+    long set = 0;
+    int c = 31;
+    for (; k > 0; k--) {
+      while (C[c][k] > r) c--;
+      r -= C[c][k];
+      set |= 1L << free(c, used);
+      c--;
+    }
+    return set;
+  }
+
+  // the c-th square (from 0) not in used
+  private static int free(int c, long used) {
+    for (int s = 0; ; s++) {
+      if ((used & (1L << s)) != 0) continue;
+      if (c-- == 0) return s;
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package com.shashki.engine;
+
+/**
+ * Fixed-size hash table of search results in two primitive arrays.
+ *
+ * Each slot is a key and one packed data word:
+ * bits 0-11 best move (from &lt;&lt; 6 | to, 0 = none), 12-19 depth, 20-21 bound,
+ * 22-27 search age, 32-63 score. Buckets hold two slots: the first keeps the
+ * deepest / current-age result, the second always takes the newest one.
+ *
+ * Shared by search threads without locks: the key array holds key ^ data, so a slot
+ * torn by two concurrent writers no longer matches its key and is simply a miss.
+ */
+public final class TranspositionTable {
+  public static final int EXACT = 1, LOWER = 2, UPPER = 3;
+
+  private final long[] keys, data;
+  private final int bucketMask;
+  private int age;
+
+  public TranspositionTable(int megabytes) {
+    long slots = Math.max(2L, (long) megabytes * 1024 * 1024 / 16);
+    int n = Integer.highestOneBit((int) Math.min(slots, 1 << 30));
+    keys = new long[n];
+    data = new long[n];
+    bucketMask = n / 2 - 1;
+  }
+
+  public int slots() { return keys.length; }
+
+  /** Call once per root search so old entries lose priority. */
+  public void newSearch() { age = (age + 1) & 63; }
+
+  public void clear() {
+    java.util.Arrays.fill(keys, 0);
+    java.util.Arrays.fill(data, 0);
+  }
+
+  /** Packed data for {@code key}, or 0 when absent. */
+  public long probe(long key) {
+    int i = ((int) key & bucketMask) << 1;
+    long d = data[i];
+    if (d != 0 && (keys[i] ^ d) == key) return d;
+    d = data[i + 1];
+    if (d != 0 && (keys[i + 1] ^ d) == key) return d;
+    return 0;
+  }
+
+  public void store(long key, int depth, int bound, int score, int move) {
+    int i = ((int) key & bucketMask) << 1;
+    long d = data[i];
+    if ((keys[i] ^ d) != key && d != 0 && depth(d) > depth && age(d) == age) i++;
+    // don't lose the best move of a position when re-storing it without one
+    d = data[i];
+    if (move == 0 && (keys[i] ^ d) == key) move = move(d);
+    d = (move & 0xFFFL) | ((long) (depth & 0xFF) << 12) | ((long) bound << 20)
+      | ((long) age << 22) | ((long) score << 32);
+    keys[i] = key ^ d;
+    data[i] = d;
+  }
+
+  public static int move(long d)  { return (int) (d & 0xFFF); }
+  public static int depth(long d) { return (int) (d >>> 12) & 0xFF; }
+  public static int bound(long d) { return (int) (d >>> 20) & 3; }
+  public static int score(long d) { return (int) (d >> 32); }
+  private static int age(long d)  { return (int) (d >>> 22) & 63; }
+}
@@ -0,0 +1,37 @@
+package com.shashki.engine;
+
+import java.util.Random;
+
+/** Zobrist keys, indexed by the bit squares of {@link Geometry}. Fixed seed, so keys are stable between runs. */
+public final class Zobrist {
+  public static final int W_MAN = 0, W_KING = 1, B_MAN = 2, B_KING = 3;
+
+  public static final long[][] PIECE = new long[4][64];
+  public static final long[] CHAIN = new long[64]; // square of a piece that must keep capturing
+  public static final long[] TAKEN = new long[64]; // jumped in the current chain, removed at its end
+  public static final long BLACK_TO_MOVE;
+
+  static {
+    Random r = new Random(0x5A5A_C0DEL);
+    for (long[] t : PIECE) for (int i = 0; i < 64; i++) t[i] = r.nextLong();
+    for (int i = 0; i < 64; i++) CHAIN[i] = r.nextLong();
+    BLACK_TO_MOVE = r.nextLong();
+    for (int i = 0; i < 64; i++) TAKEN[i] = r.nextLong();
+  }
+
+  private Zobrist() {}
+
+  /** XOR of the piece keys of every square in {@code bb}. */
+  public static long of(int kind, long bb) {
+    return of(PIECE[kind], bb);
+  }
+
+  public static long of(long[] t, long bb) {
+    long k = 0;
+    while (bb != 0) {
+      k ^= t[Long.numberOfTrailingZeros(bb)];
+      bb &= bb - 1;
+    }
+    return k;
+  }
+}
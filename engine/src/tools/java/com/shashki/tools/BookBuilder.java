@@ -0,0 +1,209 @@
+package com.shashki.tools;
+
+import com.shashki.GameState;
+import com.shashki.Move;
+import com.shashki.Rules;
+import com.shashki.engine.Evaluator;
+import com.shashki.engine.OpeningBook;
+import com.shashki.engine.Search;
+import com.shashki.engine.SearchPool;
+import com.shashki.engine.Tablebase;
+import com.shashki.engine.TranspositionTable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Writes an {@link OpeningBook} for Rules.russian() from engine self-play or from PDN
+ * games. Each move played in the first plies of a game gets 1 + 2 for a win, 1 for a
+ * draw, 0 for a loss of the side that played it.
+ *
+ * Self-play plays a random move now and then for variety; those aren't booked, only
+ * the engine's own choices are. Positions seen in fewer than two games are dropped.
+ * PDN input takes the algebraic notation of Russian checkers (c3-d4, c3:e5:g3); games
+ * with a FEN setup or moves that don't parse are skipped from that point on.
+ *
+ * Usage: BookBuilder selfplay out.book [games] [plies] [ms]
+ *        BookBuilder pdn out.book plies games.pdn...
+ */
+public class BookBuilder {
+  private final Rules rules = Rules.russian();
+  // position key -> move code -> weight
+  private final Map<Long, Map<Integer, Integer>> book = new HashMap<>();
+  private final Map<Long, Integer> seen = new HashMap<>();
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.println("usage: BookBuilder selfplay out [games] [plies] [ms] | pdn out plies files...");
+      System.exit(2);
+    }
+    BookBuilder b = new BookBuilder();
+    File out = new File(args[1]);
+    int minSeen;
+    if (args[0].equals("selfplay")) {
+      int games = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+      int plies = args.length > 3 ? Integer.parseInt(args[3]) : 12;
+      long ms = args.length > 4 ? Long.parseLong(args[4]) : 100;
+      b.selfPlay(games, plies, ms);
+      minSeen = 2;
+    } else if (args[0].equals("pdn")) {
+      int plies = Integer.parseInt(args[2]);
+      for (int i = 3; i < args.length; i++) b.pdn(new File(args[i]), plies);
+      minSeen = 1;
+    } else {
+      throw new IllegalArgumentException("unknown mode " + args[0]);
+    }
+    b.write(out, minSeen);
+  }
+
+  private void selfPlay(int games, int plies, long ms) throws Exception {
+    int threads = Runtime.getRuntime().availableProcessors();
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> running = new ArrayList<>();
+      for (int g = 0; g < games; g++) {
+        int seed = g;
+        running.add(pool.submit(() -> selfPlayGame(new Random(seed), plies, ms)));
+      }
+      int done = 0;
+      for (Future<?> f : running) {
+        f.get();
+        if (++done % 50 == 0) System.out.printf(Locale.ROOT, "%d/%d games, %d positions%n", done, games, book.size());
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private void selfPlayGame(Random rng, int plies, long ms) {
+    GameState s = new GameState(rules);
+    SearchPool search = new SearchPool(1);
+    TranspositionTable tt = new TranspositionTable(4);
+    Evaluator eval = new Evaluator();
+    List<long[]> played = new ArrayList<>(); // {key, code, white to move}
+    for (int ply = 0; ply < 200 && !s.isGameOver(); ply++) {
+      List<Move> moves = s.legalSequences();
+      Move m;
+      if (ply < plies && moves.size() > 1 && rng.nextInt(8) == 0) {
+        m = moves.get(rng.nextInt(moves.size()));
+      } else {
+        tt.newSearch();
+        m = search.search(s, moves, tt, eval, Search.MAX_DEPTH, ms).best;
+        if (ply < plies) played.add(new long[]{s.key, Search.code(s, m), s.whiteTurn ? 1 : 0});
+      }
+      s.applyMove(m);
+    }
+    record(played, s.winner());
+  }
+
+  private static final Pattern TAG = Pattern.compile("\\[(\\w+)\\s+\"([^\"]*)\"\\]");
+
+  private void pdn(File f, int plies) throws IOException {
+    String text = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+    // comments and variations carry no moves of the game itself
+    text = text.replaceAll("\\{[^}]*\\}", " ").replaceAll("(?m);.*$", " ");
+    StringBuilder sb = new StringBuilder();
+    int depth = 0;
+    for (char c : text.toCharArray()) {
+      if (c == '(') depth++;
+      else if (c == ')') depth = Math.max(0, depth - 1);
+      else if (depth == 0) sb.append(c);
+    }
+
+    int games = 0, skipped = 0;
+    boolean setup = false;
+    GameState s = new GameState(rules);
+    List<long[]> played = new ArrayList<>();
+    boolean ok = true;
+    for (String line : sb.toString().split("\n")) {
+      Matcher tag = TAG.matcher(line.trim());
+      if (tag.matches()) {
+        if (tag.group(1).equals("FEN")) setup = true;
+        continue;
+      }
+      for (String tok : line.trim().split("\\s+")) {
+        if (tok.isEmpty() || tok.matches("\\d+\\.+")) continue;
+        int result = result(tok);
+        if (result != Integer.MIN_VALUE || tok.equals("*")) {
+          if (!setup) { record(played, result == Integer.MIN_VALUE ? 0 : result); games++; }
+          if (!ok || setup) skipped++;
+          s.reset(); played.clear(); ok = true; setup = false;
+          continue;
+        }
+        if (!ok || setup) continue;
+        Move m = Notation.parse(s, tok.replaceFirst("^\\d+\\.+", "").replaceAll("[!?+#]+$", ""));
+        if (m == null) { ok = false; continue; }
+        if (played.size() < plies) played.add(new long[]{s.key, Search.code(s, m), s.whiteTurn ? 1 : 0});
+        s.applyMove(m);
+      }
+    }
+    System.out.printf(Locale.ROOT, "%s: %d games, %d cut short or skipped%n", f, games, skipped);
+  }
+
+  // +1 white won, -1 black won, 0 draw; MIN_VALUE if not a result token
+  private static int result(String tok) {
+    switch (tok) {
+      case "1-0": case "2-0": return 1;
+      case "0-1": case "0-2": return -1;
+      case "1/2-1/2": case "1-1": return 0;
+      default: return Integer.MIN_VALUE;
+    }
+  }
+
+  private synchronized void record(List<long[]> played, int winner) {
+    for (long[] p : played) {
+      int side = p[2] == 1 ? winner : -winner;
+      Map<Integer, Integer> moves = book.get(p[0]);
+      if (moves == null) book.put(p[0], moves = new HashMap<>());
+      moves.merge((int) p[1], 2 + side, Integer::sum);
+    }
+    for (long[] p : played) seen.merge(p[0], 1, Integer::sum);
+  }
+
+  private void write(File out, int minSeen) throws IOException {
+    TreeMap<Long, Map<Integer, Integer>> sorted = new TreeMap<>();
+    for (Map.Entry<Long, Map<Integer, Integer>> e : book.entrySet()) {
+      if (seen.get(e.getKey()) >= minSeen) sorted.put(e.getKey(), e.getValue());
+    }
+    int moves = 0;
+    for (Map<Integer, Integer> m : sorted.values()) moves += m.size();
+    try (DataOutputStream o = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(out), 1 << 16))) {
+      o.writeInt(OpeningBook.MAGIC);
+      o.writeInt(Tablebase.flags(rules));
+      o.writeInt(rules.size);
+      o.writeInt(sorted.size());
+      o.writeInt(moves);
+      o.writeInt(0);
+      int first = 0;
+      for (Map.Entry<Long, Map<Integer, Integer>> e : sorted.entrySet()) {
+        o.writeLong(e.getKey());
+        o.writeInt(first);
+        o.writeInt(e.getValue().size());
+        first += e.getValue().size();
+      }
+      for (Map<Integer, Integer> m : sorted.values()) {
+        for (Map.Entry<Integer, Integer> mv : m.entrySet()) {
+          o.writeInt(mv.getKey() << 20 | Math.min(OpeningBook.MAX_WEIGHT, mv.getValue()));
+        }
+      }
+    }
+    System.out.printf(Locale.ROOT, "%s: %d positions, %d moves, %d bytes%n", out, sorted.size(), moves, out.length());
+  }
+}
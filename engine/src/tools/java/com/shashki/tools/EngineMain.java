@@ -0,0 +1,247 @@
+package com.shashki.tools;
+
+import com.shashki.GameState;
+import com.shashki.Move;
+import com.shashki.Rules;
+import com.shashki.engine.Evaluator;
+import com.shashki.engine.Nnue;
+import com.shashki.engine.Search;
+import com.shashki.engine.SearchPool;
+import com.shashki.engine.Tablebase;
+import com.shashki.engine.TranspositionTable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The search as a standalone process, speaking a line protocol on stdin/stdout modelled
+ * on UCI. Moves and positions use Russian notation (see {@link Notation}).
+ *
+ * <pre>
+ * uci                                  -> id, options, uciok
+ * isready                              -> readyok
+ * setoption name Hash|Threads|MultiPV|Rules|Tablebase|Network value ...
+ * ucinewgame                           clears the hash table
+ * position startpos|fen W:Wc3,...:B... [moves c3-d4 ...]
+ * go [depth N] [movetime MS] [nodes N] [infinite]
+ *                                      -> info depth D [multipv K] score cp|mate N nodes N nps N time MS pv ...
+ *                                      -> bestmove c3-d4
+ * stop                                 ends the search, which still answers bestmove
+ * d                                    prints the position and the legal moves
+ * quit
+ * </pre>
+ *
+ * Scores are from the side to move: cp in hundredths of a man, mate in plies to the end
+ * of the game (negative when losing). With MultiPV above one every iteration reports that
+ * many root moves, best first, each with its own score and line. Rules take Rules.russian() field overrides, e.g.
+ * {@code kingFlying=false,maxCaptureRule=true}.
+ */
+public class EngineMain {
+  private final PrintStream out;
+  private final ExecutorService searcher = Executors.newSingleThreadExecutor(r -> {
+    Thread t = new Thread(r, "search");
+    t.setDaemon(true);
+    return t;
+  });
+
+  private Rules rules = Rules.russian();
+  private GameState pos = new GameState(rules);
+  private int hashMb = 16, threads = 1, multiPv = 1;
+  private TranspositionTable tt;
+  private SearchPool pool;
+  private Tablebase tablebase;
+  private final Evaluator eval = new Evaluator();
+  private Future<?> running;
+  private Search.Clock clock; // of the running search; made here, so a stop can't arrive before it exists
+
+  EngineMain(PrintStream out) {
+    this.out = out;
+  }
+
+  public static void main(String[] args) throws IOException {
+    EngineMain e = new EngineMain(new PrintStream(System.out, true, "UTF-8"));
+    BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+    for (String line; (line = in.readLine()) != null; ) {
+      if (!e.command(line.trim())) break;
+    }
+    e.stop();
+  }
+
+  // false on quit
+  boolean command(String line) {
+    String[] t = line.split("\\s+");
+    switch (t[0]) {
+      case "uci":
+        send("id name Shashki");
+        send("option name Hash type spin default 16 min 1 max 1024");
+        send("option name Threads type spin default 1 min 1 max 64");
+        send("option name MultiPV type spin default 1 min 1 max 64");
+        send("option name Rules type string default <empty>");
+        send("option name Tablebase type string default <empty>");
+        send("option name Network type string default <empty>");
+        send("uciok");
+        break;
+      case "isready": send("readyok"); break;
+      case "setoption": setOption(line); break;
+      case "ucinewgame": stop(); if (tt != null) tt.clear(); break;
+      case "position": stop(); position(t); break;
+      case "go": stop(); go(t); break;
+      case "stop": stop(); break;
+      case "d":
+        send(Notation.fen(pos));
+        StringBuilder sb = new StringBuilder("moves");
+        for (Move m : pos.legalSequences()) sb.append(' ').append(Notation.name(pos, m));
+        send(sb.toString());
+        break;
+      case "quit": return false;
+      case "": break;
+      default: send("info string unknown command " + t[0]);
+    }
+    return true;
+  }
+
+  private void setOption(String line) {
+    int n = line.indexOf(" name "), v = line.indexOf(" value ");
+    if (n < 0) return;
+    String name = (v > n ? line.substring(n + 6, v) : line.substring(n + 6)).trim();
+    String value = v > 0 ? line.substring(v + 7).trim() : "";
+    stop();
+    try {
+      switch (name.toLowerCase(Locale.ROOT)) {
+        case "hash": hashMb = Math.max(1, Integer.parseInt(value)); tt = null; break;
+        case "threads": threads = Math.max(1, Integer.parseInt(value)); break;
+        case "multipv": multiPv = Math.max(1, Integer.parseInt(value)); break;
+        case "rules":
+          List<String> o = new ArrayList<>();
+          for (String kv : value.split(",")) if (kv.contains("=")) o.add(kv.trim());
+          rules = Perft.rules(o);
+          pos = new GameState(rules);
+          eval.network = null;
+          tt = null;
+          if (tablebase != null) { tablebase = null; send("info string tablebase off"); } // built for the old rules
+          break;
+        case "tablebase":
+          tablebase = value.isEmpty() || value.equals("<empty>") ? null : Tablebase.open(new File(value), rules);
+          send("info string tablebase " + (tablebase == null ? "off" : "up to " + tablebase.maxPieces() + " pieces"));
+          break;
+        case "network":
+          eval.network = null;
+          if (!value.isEmpty() && !value.equals("<empty>")) {
+            try (InputStream in = new FileInputStream(value)) { eval.network = Nnue.read(in, rules); }
+          }
+          send("info string network " + (eval.network == null ? "off" : eval.network.hidden + " hidden"));
+          if (tt != null) tt.clear();
+          break;
+        default: send("info string unknown option " + name);
+      }
+    } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+      send("info string bad value for " + name + ": " + e.getMessage());
+    }
+  }
+
+  private void position(String[] t) {
+    GameState s = new GameState(rules);
+    int i = 1;
+    if (t.length > 1 && t[1].equals("fen")) {
+      StringBuilder fen = new StringBuilder();
+      for (i = 2; i < t.length && !t[i].equals("moves"); i++) fen.append(t[i]);
+      if (!Notation.fen(s, fen.toString())) { send("info string bad fen"); return; }
+    } else {
+      while (i < t.length && !t[i].equals("moves")) i++;
+    }
+    for (i++; i < t.length; i++) {
+      Move m = Notation.parse(s, t[i]);
+      if (m == null) { send("info string illegal move " + t[i]); break; }
+      s.applyMove(m);
+    }
+    pos = s;
+  }
+
+  private void go(String[] t) {
+    int depth = Search.MAX_DEPTH;
+    long ms = 0, nodes = 0;
+    for (int i = 1; i < t.length; i++) {
+      boolean arg = i + 1 < t.length;
+      switch (t[i]) {
+        case "depth": if (arg) depth = Math.max(1, Math.min(Search.MAX_DEPTH, Integer.parseInt(t[++i]))); break;
+        case "movetime": if (arg) ms = Long.parseLong(t[++i]); break;
+        case "nodes": if (arg) nodes = Long.parseLong(t[++i]); break;
+        case "infinite": depth = Search.MAX_DEPTH; ms = 0; break; // until stop
+        default: break;
+      }
+    }
+    List<Move> moves = pos.legalSequences();
+    if (moves.isEmpty()) { send("bestmove (none)"); return; }
+
+    if (tt == null) tt = new TranspositionTable(hashMb);
+    if (pool == null || pool.threads != threads) {
+      if (pool != null) pool.shutdown();
+      pool = new SearchPool(threads);
+    }
+    tt.newSearch();
+    pool.tablebase = tablebase;
+    pool.maxNodes = nodes;
+    pool.multiPv = multiPv;
+    GameState s = new GameState(pos);
+    int maxDepth = depth;
+    long budget = ms;
+    pool.listener = (d, n, nanos, lines) -> {
+      for (int k = 0; k < lines.size(); k++) {
+        Search.Line l = lines.get(k);
+        StringBuilder sb = new StringBuilder();
+        sb.append("info depth ").append(d);
+        if (multiPv > 1) sb.append(" multipv ").append(k + 1);
+        sb.append(" score ").append(score(l.score))
+          .append(" nodes ").append(n).append(" nps ").append(n * 1_000_000_000L / Math.max(1, nanos))
+          .append(" time ").append(nanos / 1_000_000).append(" pv");
+        GameState line = new GameState(s);
+        for (Move m : l.pv) { sb.append(' ').append(Notation.name(line, m)); line.make(m); }
+        send(sb.toString());
+      }
+    };
+    SearchPool p = pool;
+    Search.Clock c = clock = new Search.Clock();
+    running = searcher.submit(() -> {
+      SearchPool.Result r = p.search(s, moves, tt, eval, maxDepth, budget, c);
+      send("bestmove " + Notation.name(s, r.best));
+    });
+  }
+
+  private static String score(int sc) {
+    if (sc > Search.WIN - 1000) return "mate " + (Search.WIN - sc);
+    if (sc < -Search.WIN + 1000) return "mate -" + (Search.WIN + sc);
+    return "cp " + sc / 10;
+  }
+
+  // stops a running search and waits for its bestmove
+  private void stop() {
+    Future<?> f = running;
+    if (f == null) return;
+    clock.stop = true; // also before the searcher thread has started on it
+    try {
+      f.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      send("info string search failed: " + e.getCause());
+    }
+    running = null;
+  }
+
+  private synchronized void send(String line) {
+    out.println(line);
+  }
+}
@@ -0,0 +1,302 @@
+package com.shashki.tools;
+
+import com.shashki.GameState;
+import com.shashki.Move;
+import com.shashki.Rules;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays two engines against each other until a sequential probability ratio test decides
+ * whether {@code new} is at least {@code elo1} stronger than {@code base} or not stronger
+ * than {@code elo0}, or until {@code games} are played.
+ *
+ * Engines are {@link EngineMain} processes, so two builds can be compared: point
+ * {@code base=} at a jar of the old revision. Games run concurrently, each worker keeping
+ * one process of each engine and its own GameState as referee. Every opening is played
+ * twice with colors swapped. A game is drawn on the third repetition, after 30 plies
+ * without a capture or a man move, or after 300 plies.
+ *
+ * Usage: MatchRunner [key=value...]
+ *   new=CMD base=CMD     engine commands, default: EngineMain on this classpath
+ *   movetime=MS | nodes=N | depth=N   limit per move (default movetime=100)
+ *   games=N concurrency=N hash=MB
+ *   openings=FILE        one FEN or move list (c3-d4 f6-g5) per line;
+ *                        default: every position after plies=N (3) from the start
+ *   elo0=0 elo1=10 alpha=0.05 beta=0.05
+ *   new.NAME=V base.NAME=V  engine option for one side, e.g. new.Network=nnue.bin
+ */
+public class MatchRunner {
+  private static final int MAX_PLIES = 300, QUIET_PLIES = 30;
+
+  private final Map<String, String> opt = new HashMap<>();
+  private final List<String> openings = new ArrayList<>();
+  private final Rules rules = Rules.russian();
+
+  // results from the point of view of new
+  private int wins, draws, losses;
+  private final long[] nodes = new long[2], nanos = new long[2], moves = new long[2];
+  private volatile boolean done;
+
+  public static void main(String[] args) throws Exception {
+    MatchRunner r = new MatchRunner();
+    r.opt.put("movetime", "100");
+    r.opt.put("games", "20000");
+    r.opt.put("concurrency", "" + Runtime.getRuntime().availableProcessors());
+    r.opt.put("hash", "16");
+    r.opt.put("plies", "3");
+    r.opt.put("elo0", "0");
+    r.opt.put("elo1", "10");
+    r.opt.put("alpha", "0.05");
+    r.opt.put("beta", "0.05");
+    for (String a : args) {
+      String[] kv = a.split("=", 2);
+      if (kv.length != 2) throw new IllegalArgumentException("expected key=value: " + a);
+      r.opt.put(kv[0], kv[1]);
+    }
+    r.run();
+  }
+
+  private void run() throws Exception {
+    loadOpenings();
+    int games = Integer.parseInt(opt.get("games")), threads = Integer.parseInt(opt.get("concurrency"));
+    System.out.printf(Locale.ROOT, "%d openings, up to %d games on %d workers, %s%n", openings.size(), games, threads, limit());
+
+    AtomicInteger next = new AtomicInteger();
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    long start = System.nanoTime();
+    try {
+      List<Future<?>> running = new ArrayList<>();
+      for (int w = 0; w < threads; w++) {
+        running.add(pool.submit(() -> {
+          try (Engine neu = new Engine(0, command("new")); Engine base = new Engine(1, command("base"))) {
+            for (int g; !done && (g = next.getAndIncrement()) < games; ) {
+              String opening = openings.get(g / 2 % openings.size());
+              boolean newWhite = (g & 1) == 0;
+              int r = play(opening, newWhite ? neu : base, newWhite ? base : neu);
+              record(newWhite ? r : -r);
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> f : running) f.get();
+    } finally {
+      done = true;
+      pool.shutdownNow();
+    }
+    report(true, (System.nanoTime() - start) / 1_000_000_000L);
+  }
+
+  // one game from the opening FEN: +1 white won, -1 black won, 0 draw
+  private int play(String opening, Engine white, Engine black) throws IOException {
+    GameState s = new GameState(rules);
+    Notation.fen(s, opening);
+    white.send("ucinewgame");
+    black.send("ucinewgame");
+    StringBuilder played = new StringBuilder();
+    Map<Long, Integer> seen = new HashMap<>();
+    int quiet = 0;
+    for (int ply = 0; ply < MAX_PLIES; ply++) {
+      if (s.isGameOver()) return s.winner();
+      if (seen.merge(s.key, 1, Integer::sum) >= 3 || quiet >= QUIET_PLIES) return 0;
+      Engine e = s.whiteTurn ? white : black;
+      String name = e.bestMove("position fen " + opening + " moves" + played);
+      Move m = Notation.parse(s, name);
+      if (m == null) {
+        System.err.println("illegal move " + name + " after " + opening + played);
+        return s.whiteTurn ? -1 : 1;
+      }
+      quiet = !m.captures.isEmpty() || !s.at(m.fx, m.fy).isKing() ? 0 : quiet + 1;
+      played.append(' ').append(name);
+      s.applyMove(m);
+    }
+    return 0;
+  }
+
+  private synchronized void record(int r) {
+    if (done) return;
+    if (r > 0) wins++;
+    else if (r < 0) losses++;
+    else draws++;
+    double llr = llr(), lo = Math.log(beta() / (1 - alpha())), hi = Math.log((1 - beta()) / alpha());
+    if (llr <= lo || llr >= hi) done = true;
+    if (!done && (wins + draws + losses) % 50 == 0) report(false, 0);
+  }
+
+  private synchronized void report(boolean last, long seconds) {
+    int n = wins + draws + losses;
+    if (n == 0) return;
+    double s = (wins + draws / 2.0) / n, err = 1.96 * Math.sqrt(variance() / n);
+    double lo = Math.log(beta() / (1 - alpha())), hi = Math.log((1 - beta()) / alpha()), llr = llr();
+    System.out.printf(Locale.ROOT, "games %d: +%d =%d -%d  score %.1f%%  elo %+.1f +/- %.1f  LLR %.2f [%.2f, %.2f]%s%n",
+      n, wins, draws, losses, 100 * s, elo(s), (elo(Math.min(s + err, 0.999)) - elo(Math.max(s - err, 0.001))) / 2,
+      llr, lo, hi, llr >= hi ? "  H1 accepted" : llr <= lo ? "  H0 accepted" : "");
+    if (!last) return;
+    String[] who = {"new", "base"};
+    for (int i = 0; i < 2; i++) {
+      System.out.printf(Locale.ROOT, "%-4s %10d knps %8.1f ms/move %9d moves%n",
+        who[i], nodes[i] * 1_000_000L / Math.max(1, nanos[i]), nanos[i] / 1e6 / Math.max(1, moves[i]), moves[i]);
+    }
+    System.out.printf(Locale.ROOT, "%d s%n", seconds);
+  }
+
+  // log-likelihood ratio of H1 (elo1) against H0 (elo0) under a normal approximation
+  // of the per-game score
+  private double llr() {
+    int n = wins + draws + losses;
+    double v = variance();
+    if (n == 0 || v == 0) return 0;
+    double s = (wins + draws / 2.0) / n;
+    double s0 = expected(Double.parseDouble(opt.get("elo0"))), s1 = expected(Double.parseDouble(opt.get("elo1")));
+    return n * (s1 - s0) * (2 * s - s0 - s1) / (2 * v);
+  }
+
+  private double variance() {
+    int n = wins + draws + losses;
+    double s = (wins + draws / 2.0) / n;
+    return (wins * (1 - s) * (1 - s) + draws * (0.5 - s) * (0.5 - s) + losses * s * s) / n;
+  }
+
+  private double alpha() { return Double.parseDouble(opt.get("alpha")); }
+  private double beta() { return Double.parseDouble(opt.get("beta")); }
+
+  private static double expected(double elo) { return 1 / (1 + Math.pow(10, -elo / 400)); }
+
+  private static double elo(double score) {
+    score = Math.max(0.001, Math.min(0.999, score));
+    return -400 * Math.log10(1 / score - 1);
+  }
+
+  private String limit() {
+    if (opt.containsKey("nodes")) return "nodes " + opt.get("nodes");
+    if (opt.containsKey("depth")) return "depth " + opt.get("depth");
+    return "movetime " + opt.get("movetime");
+  }
+
+  private List<String> command(String key) {
+    String c = opt.get(key);
+    if (c != null) return Arrays.asList(c.trim().split("\\s+"));
+    return Arrays.asList(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+      "-cp", System.getProperty("java.class.path"), EngineMain.class.getName());
+  }
+
+  private void loadOpenings() throws IOException {
+    Set<String> unique = new HashSet<>();
+    if (opt.containsKey("openings")) {
+      for (String line : Files.readAllLines(new File(opt.get("openings")).toPath(), StandardCharsets.UTF_8)) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) continue;
+        GameState s = new GameState(rules);
+        boolean ok = line.startsWith("W:") || line.startsWith("B:") ? Notation.fen(s, line) : replay(s, line);
+        if (!ok) throw new IOException("bad opening: " + line);
+        if (unique.add(Notation.fen(s))) openings.add(Notation.fen(s));
+      }
+    } else {
+      Map<String, Boolean> found = new LinkedHashMap<>();
+      expand(new GameState(rules), Integer.parseInt(opt.get("plies")), found);
+      openings.addAll(found.keySet());
+    }
+    if (openings.isEmpty()) throw new IOException("no openings");
+  }
+
+  private static boolean replay(GameState s, String line) {
+    for (String t : line.split("\\s+")) {
+      if (t.matches("\\d+\\.+")) continue;
+      Move m = Notation.parse(s, t);
+      if (m == null) return false;
+      s.applyMove(m);
+    }
+    return true;
+  }
+
+  private static void expand(GameState s, int plies, Map<String, Boolean> out) {
+    List<Move> moves = s.legalSequences();
+    if (plies == 0 || moves.isEmpty()) {
+      if (!moves.isEmpty()) out.put(Notation.fen(s), true);
+      return;
+    }
+    for (Move m : moves) {
+      GameState c = new GameState(s);
+      c.applyMove(m);
+      expand(c, plies - 1, out);
+    }
+  }
+
+  /** One engine process, spoken to over the {@link EngineMain} protocol. */
+  private final class Engine implements Closeable {
+    private final Process p;
+    private final BufferedReader in;
+    private final PrintWriter out;
+    private final int side; // 0 new, 1 base
+
+    Engine(int side, List<String> cmd) throws IOException {
+      this.side = side;
+      p = new ProcessBuilder(cmd).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+      in = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8));
+      out = new PrintWriter(new OutputStreamWriter(p.getOutputStream(), StandardCharsets.UTF_8), true);
+      send("uci");
+      expect("uciok");
+      send("setoption name Hash value " + opt.get("hash"));
+      send("setoption name Threads value 1");
+      String prefix = side == 0 ? "new." : "base.";
+      for (Map.Entry<String, String> o : opt.entrySet()) {
+        if (o.getKey().startsWith(prefix)) send("setoption name " + o.getKey().substring(prefix.length()) + " value " + o.getValue());
+      }
+      send("isready");
+      expect("readyok");
+    }
+
+    void send(String line) { out.println(line); }
+
+    // the engine's move in notation, counting its nodes and thinking time
+    String bestMove(String position) throws IOException {
+      send(position);
+      long start = System.nanoTime();
+      send("go " + limit());
+      long n = 0;
+      for (String line; (line = in.readLine()) != null; ) {
+        if (line.startsWith("info ")) {
+          String[] t = line.split(" ");
+          for (int i = 1; i + 1 < t.length; i++) if (t[i].equals("nodes")) n = Long.parseLong(t[i + 1]);
+        } else if (line.startsWith("bestmove ")) {
+          long dt = System.nanoTime() - start;
+          synchronized (MatchRunner.this) { nodes[side] += n; nanos[side] += dt; moves[side]++; }
+          return line.substring(9).trim();
+        }
+      }
+      throw new IOException("engine exited");
+    }
+
+    private void expect(String token) throws IOException {
+      for (String line; (line = in.readLine()) != null; ) if (line.equals(token)) return;
+      throw new IOException("engine exited before " + token);
+    }
+
+    @Override public void close() {
+      send("quit");
+      p.destroy();
+    }
+  }
+}
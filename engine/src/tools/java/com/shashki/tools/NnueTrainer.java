@@ -0,0 +1,331 @@
+package com.shashki.tools;
+
+import com.shashki.GameState;
+import com.shashki.Move;
+import com.shashki.Rules;
+import com.shashki.engine.Evaluator;
+import com.shashki.engine.Geometry;
+import com.shashki.engine.Nnue;
+import com.shashki.engine.Search;
+import com.shashki.engine.SearchPool;
+import com.shashki.engine.TranspositionTable;
+import com.shashki.engine.Zobrist;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Trains a {@link Nnue} on the CPU and writes it in the network file format.
+ *
+ * Positions come from self-play with the hand-set evaluation at a fixed depth, after a
+ * few random moves from the start. Only quiet positions (nothing to capture) are kept,
+ * each with the search score and the game result for the side to move; the target is
+ * {@code lambda * sigmoid(score) + (1 - lambda) * result}. The float network has the
+ * shape of the quantized one and is trained by Adam on the squared error of
+ * sigmoid(output); weights are clipped while training so that, rounded, they fit the
+ * int16 accumulator and the int8 output layer.
+ *
+ * Usage: NnueTrainer [key=value...]
+ *   out=FILE             network to write (default nnue.bin)
+ *   data=FILE            positions, one "fen score result" per line; generated ones are
+ *                        appended, and all of them are trained on
+ *   games=N depth=N random=N threads=N   self-play to run first (games=0: data only)
+ *   hidden=32 epochs=N batch=N lr=0.001 lambda=0.7 seed=N
+ */
+public class NnueTrainer {
+  private static final int MAX_PLIES = 300, QUIET_PLIES = 30;
+  private static final float SCALE = 2f; // sigmoid(score / SCALE men): a man up wins ~62%
+
+  private final Map<String, String> opt = new HashMap<>();
+  private final Rules rules = Rules.russian();
+
+  // training set: active inputs of the side to move's view, then the other view's
+  private final List<int[]> us = new ArrayList<>(), them = new ArrayList<>();
+  private final List<Float> target = new ArrayList<>();
+
+  // float network and Adam moments, parameters in one array: w1, b1, w2, b2
+  private int hidden;
+  private float[] p, m, v, g;
+  private int w1, b1, w2, b2;
+  private float w1Max;
+  private int[] heldOut; // sample indices kept out of training
+
+  public static void main(String[] args) throws Exception {
+    NnueTrainer t = new NnueTrainer();
+    t.opt.put("out", "nnue.bin");
+    t.opt.put("data", "nnue-data.txt");
+    t.opt.put("games", "200");
+    t.opt.put("depth", "6");
+    t.opt.put("random", "6");
+    t.opt.put("threads", "" + Runtime.getRuntime().availableProcessors());
+    t.opt.put("hidden", "32");
+    t.opt.put("epochs", "30");
+    t.opt.put("batch", "256");
+    t.opt.put("lr", "0.001");
+    t.opt.put("lambda", "0.7");
+    t.opt.put("seed", "1");
+    for (String a : args) {
+      String[] kv = a.split("=", 2);
+      if (kv.length != 2) throw new IllegalArgumentException("expected key=value: " + a);
+      t.opt.put(kv[0], kv[1]);
+    }
+    t.run();
+  }
+
+  private int num(String key) { return Integer.parseInt(opt.get(key)); }
+
+  private void run() throws Exception {
+    File data = new File(opt.get("data"));
+    if (num("games") > 0) selfPlay(data);
+    load(data);
+    if (target.isEmpty()) throw new IOException("no positions in " + data);
+    train();
+    Nnue net = quantize();
+    try (OutputStream out = new FileOutputStream(opt.get("out"))) { net.write(out); }
+    System.out.printf(Locale.ROOT, "wrote %s: %d inputs, %d hidden%n", opt.get("out"), Nnue.INPUTS, hidden);
+    check(net);
+  }
+
+  // ===== data =====
+
+  private void selfPlay(File data) throws Exception {
+    int games = num("games"), threads = num("threads");
+    AtomicInteger next = new AtomicInteger(), positions = new AtomicInteger();
+    long start = System.nanoTime();
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(data, true), StandardCharsets.UTF_8))) {
+      List<Future<?>> running = new ArrayList<>();
+      for (int w = 0; w < threads; w++) {
+        running.add(pool.submit(() -> {
+          TranspositionTable tt = new TranspositionTable(16);
+          SearchPool search = new SearchPool(1);
+          for (int g; (g = next.getAndIncrement()) < games; ) {
+            List<String> lines = play(new Random(num("seed") * 1_000_003L + g), tt, search);
+            synchronized (out) {
+              for (String l : lines) out.write(l + "\n");
+            }
+            int n = positions.addAndGet(lines.size());
+            if ((g + 1) % 50 == 0) System.out.printf(Locale.ROOT, "%d games, %d positions, %d s%n", g + 1, n, (System.nanoTime() - start) / 1_000_000_000L);
+          }
+          return null;
+        }));
+      }
+      for (Future<?> f : running) f.get();
+    } finally {
+      pool.shutdownNow();
+    }
+    System.out.printf(Locale.ROOT, "self-play: %d games, %d positions%n", games, positions.get());
+  }
+
+  // one game; its quiet positions as "fen score result", score in thousandths and result
+  // in {0, 0.5, 1}, both for the side to move
+  private List<String> play(Random rng, TranspositionTable tt, SearchPool search) {
+    GameState s = new GameState(rules);
+    for (int i = num("random"); i > 0; i--) {
+      List<Move> moves = s.legalSequences();
+      if (moves.isEmpty()) break;
+      s.applyMove(moves.get(rng.nextInt(moves.size())));
+    }
+    tt.clear();
+    Evaluator eval = new Evaluator();
+    List<String> fens = new ArrayList<>();
+    List<Integer> scores = new ArrayList<>();
+    List<Boolean> white = new ArrayList<>();
+    Map<Long, Integer> seen = new HashMap<>();
+    int quiet = 0, winner = 0;
+    for (int ply = 0; ply < MAX_PLIES; ply++) {
+      List<Move> moves = s.legalSequences();
+      if (moves.isEmpty()) { winner = s.whiteTurn ? -1 : 1; break; }
+      if (seen.merge(s.key, 1, Integer::sum) >= 3 || quiet >= QUIET_PLIES) break;
+      tt.newSearch();
+      SearchPool.Result r = search.search(s, moves, tt, eval, num("depth"), 0);
+      if (moves.get(0).captures.isEmpty() && Math.abs(r.score) < Search.WIN - 1000) {
+        fens.add(Notation.fen(s));
+        scores.add(r.score);
+        white.add(s.whiteTurn);
+      }
+      Move m = r.best;
+      quiet = !m.captures.isEmpty() || !s.at(m.fx, m.fy).isKing() ? 0 : quiet + 1;
+      s.applyMove(m);
+    }
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < fens.size(); i++) {
+      float result = winner == 0 ? 0.5f : (winner > 0) == white.get(i) ? 1 : 0;
+      lines.add(fens.get(i) + " " + scores.get(i) + " " + result);
+    }
+    return lines;
+  }
+
+  private void load(File data) throws IOException {
+    if (!data.isFile()) return;
+    float lambda = Float.parseFloat(opt.get("lambda"));
+    Geometry geo = Geometry.of(rules.size);
+    int[] mirror = new int[64];
+    for (int s = 0; s < 64; s++) mirror[s] = geo.xOf[s] < 0 ? s : geo.square(rules.size - 1 - geo.xOf[s], rules.size - 1 - geo.yOf[s]);
+    GameState s = new GameState(rules);
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(data), StandardCharsets.UTF_8))) {
+      for (String line; (line = in.readLine()) != null; ) {
+        String[] t = line.trim().split(" ");
+        if (t.length != 3 || !Notation.fen(s, t[0])) continue;
+        long[] bb = {s.whiteMen, s.whiteKings, s.blackMen, s.blackKings};
+        int n = 0;
+        for (long b : bb) n += Long.bitCount(b);
+        int[] w = new int[n], b = new int[n];
+        int i = 0;
+        for (int kind = 0; kind < 4; kind++) {
+          for (long x = bb[kind]; x != 0; x &= x - 1) {
+            int sq = Long.numberOfTrailingZeros(x);
+            w[i] = kind * 64 + sq;
+            b[i++] = (kind ^ 2) * 64 + mirror[sq];
+          }
+        }
+        us.add(s.whiteTurn ? w : b);
+        them.add(s.whiteTurn ? b : w);
+        target.add(lambda * sigmoid(Integer.parseInt(t[1]) / 1000f) + (1 - lambda) * Float.parseFloat(t[2]));
+      }
+    }
+    System.out.printf(Locale.ROOT, "%d positions from %s%n", target.size(), data);
+  }
+
+  // ===== training =====
+
+  private void train() {
+    hidden = num("hidden");
+    int h = hidden;
+    w1 = 0; b1 = Nnue.INPUTS * h; w2 = b1 + h; b2 = w2 + 2 * h;
+    p = new float[b2 + 1]; m = new float[p.length]; v = new float[p.length]; g = new float[p.length];
+    // the accumulator is int16: room for every man of the start position, with margin
+    int pieces = rules.size / 2 * (rules.size / 2 - 1) * 2;
+    w1Max = 30000f / Nnue.QA / (pieces + 1);
+    Random rng = new Random(num("seed"));
+    for (int i = w1; i < b1; i++) p[i] = (float) (rng.nextGaussian() * 0.1);
+    for (int i = b1; i < w2; i++) p[i] = 0.25f;
+    for (int i = w2; i < b2; i++) p[i] = (float) (rng.nextGaussian() * 0.1);
+
+    int n = target.size(), valid = Math.max(1, n / 20), batch = num("batch");
+    int[] order = new int[n];
+    for (int i = 0; i < n; i++) order[i] = i;
+    for (int i = n - 1; i > 0; i--) { int j = rng.nextInt(i + 1), x = order[i]; order[i] = order[j]; order[j] = x; }
+    heldOut = Arrays.copyOf(order, valid);
+    float lr = Float.parseFloat(opt.get("lr"));
+    float[] acc = new float[2 * h], da = new float[2 * h];
+    int step = 0;
+    for (int epoch = 1; epoch <= num("epochs"); epoch++) {
+      // shuffle the training part, the first `valid` stay held out
+      for (int i = n - 1; i > valid; i--) { int j = valid + rng.nextInt(i - valid + 1), x = order[i]; order[i] = order[j]; order[j] = x; }
+      double loss = 0;
+      for (int from = valid; from < n; from += batch) {
+        int to = Math.min(n, from + batch);
+        Arrays.fill(g, 0);
+        for (int k = from; k < to; k++) loss += backward(order[k], acc, da, 1f / (to - from));
+        adam(lr, ++step);
+      }
+      double held = 0;
+      for (int k = 0; k < valid; k++) {
+        float e = sigmoid(forward(order[k], acc)) - target.get(order[k]);
+        held += e * e;
+      }
+      System.out.printf(Locale.ROOT, "epoch %d: train %.5f  validation %.5f%n", epoch, loss / (n - valid), held / valid);
+    }
+  }
+
+  // output in men; acc gets both accumulators before clamping
+  private float forward(int i, float[] acc) {
+    int h = hidden;
+    for (int j = 0; j < h; j++) { acc[j] = p[b1 + j]; acc[h + j] = p[b1 + j]; }
+    for (int f : us.get(i)) for (int j = 0; j < h; j++) acc[j] += p[w1 + f * h + j];
+    for (int f : them.get(i)) for (int j = 0; j < h; j++) acc[h + j] += p[w1 + f * h + j];
+    float out = p[b2];
+    for (int j = 0; j < 2 * h; j++) out += clamp01(acc[j]) * p[w2 + j];
+    return out;
+  }
+
+  // adds the scaled gradient of one position to g, returns its squared error
+  private float backward(int i, float[] acc, float[] da, float scale) {
+    int h = hidden;
+    float sg = sigmoid(forward(i, acc)), err = sg - target.get(i);
+    float d = 2 * err * sg * (1 - sg) / SCALE * scale;
+    g[b2] += d;
+    for (int j = 0; j < 2 * h; j++) {
+      float a = acc[j];
+      g[w2 + j] += d * clamp01(a);
+      // the clipped ReLU passes gradient only between its bounds
+      da[j] = a > 0 && a < 1 ? d * p[w2 + j] : 0;
+      g[b1 + (j < h ? j : j - h)] += da[j];
+    }
+    for (int f : us.get(i)) for (int j = 0; j < h; j++) g[w1 + f * h + j] += da[j];
+    for (int f : them.get(i)) for (int j = 0; j < h; j++) g[w1 + f * h + j] += da[h + j];
+    return err * err;
+  }
+
+  private void adam(float lr, int t) {
+    float b1p = (float) (1 - Math.pow(0.9, t)), b2p = (float) (1 - Math.pow(0.999, t));
+    float w2Max = 127f / Nnue.QB;
+    for (int i = 0; i < p.length; i++) {
+      m[i] = 0.9f * m[i] + 0.1f * g[i];
+      v[i] = 0.999f * v[i] + 0.001f * g[i] * g[i];
+      p[i] -= lr * (m[i] / b1p) / ((float) Math.sqrt(v[i] / b2p) + 1e-8f);
+      float max = i < w2 ? w1Max : i < b2 ? w2Max : 1000f;
+      if (p[i] > max) p[i] = max;
+      else if (p[i] < -max) p[i] = -max;
+    }
+  }
+
+  private Nnue quantize() {
+    int h = hidden;
+    short[] qw1 = new short[Nnue.INPUTS * h], qb1 = new short[h];
+    byte[] qw2 = new byte[2 * h];
+    for (int i = 0; i < qw1.length; i++) qw1[i] = (short) Math.round(p[w1 + i] * Nnue.QA);
+    for (int i = 0; i < h; i++) qb1[i] = (short) Math.round(p[b1 + i] * Nnue.QA);
+    for (int i = 0; i < 2 * h; i++) qw2[i] = (byte) Math.max(-127, Math.min(127, Math.round(p[w2 + i] * Nnue.QB)));
+    return new Nnue(rules, h, qw1, qb1, qw2, Math.round(p[b2] * Nnue.QA * Nnue.QB));
+  }
+
+  // how far rounding moved the outputs, on the held-out positions
+  private void check(Nnue net) {
+    float[] acc = new float[2 * hidden];
+    GameState s = new GameState(rules);
+    s.attach(net);
+    double diff = 0;
+    int n = Math.min(2000, heldOut.length);
+    for (int k = 0; k < n; k++) {
+      int i = heldOut[k];
+      s.whiteMen = s.whiteKings = s.blackMen = s.blackKings = 0;
+      s.whiteTurn = true;
+      for (int f : us.get(i)) {
+        int kind = f / 64, bit = f % 64;
+        if (kind == Zobrist.W_MAN) s.whiteMen |= 1L << bit;
+        else if (kind == Zobrist.W_KING) s.whiteKings |= 1L << bit;
+        else if (kind == Zobrist.B_MAN) s.blackMen |= 1L << bit;
+        else s.blackKings |= 1L << bit;
+      }
+      s.rehash();
+      diff += Math.abs(net.evaluate(s) - forward(i, acc) * 1000);
+    }
+    System.out.printf(Locale.ROOT, "quantization error %.1f thousandths of a man on average%n", diff / n);
+  }
+
+  private static float sigmoid(float men) { return 1 / (1 + (float) Math.exp(-men / SCALE)); }
+
+  private static float clamp01(float a) { return a < 0 ? 0 : a > 1 ? 1 : a; }
+}
@@ -0,0 +1,95 @@
+package com.shashki.tools;
+
+import com.shashki.GameState;
+import com.shashki.Move;
+import com.shashki.Piece;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Russian algebraic notation: a1 is white's bottom-left corner, a move is c3-d4 and a
+ * capture c3:e5 or, through every landing square, c3:e5:g3. Positions are PDN FEN with
+ * algebraic squares, e.g. {@code W:Wc3,Kd4:Bb6}.
+ */
+final class Notation {
+  private static final Pattern SQUARE = Pattern.compile("([a-j])(10|[1-9])");
+
+  private Notation() {}
+
+  static String square(GameState s, int x, int y) {
+    return "" + (char) ('a' + x) + (s.N - y);
+  }
+
+  static String name(GameState s, Move m) {
+    StringBuilder sb = new StringBuilder(square(s, m.fx, m.fy));
+    char sep = m.captures.isEmpty() ? '-' : ':';
+    for (int[] p : m.path) sb.append(sep).append(square(s, p[0], p[1]));
+    return sb.append(sep).append(square(s, m.tx, m.ty)).toString();
+  }
+
+  /**
+   * The legal sequence {@code text} stands for, or null. Intermediate squares may be left
+   * out; when they are given they must match.
+   */
+  static Move parse(GameState s, String text) {
+    List<int[]> sq = new ArrayList<>();
+    Matcher m = SQUARE.matcher(text);
+    while (m.find()) sq.add(new int[]{m.group(1).charAt(0) - 'a', s.N - Integer.parseInt(m.group(2))});
+    if (sq.size() < 2) return null;
+    int[] from = sq.get(0), to = sq.get(sq.size() - 1);
+    for (Move lm : s.legalSequences()) {
+      if (lm.fx != from[0] || lm.fy != from[1] || lm.tx != to[0] || lm.ty != to[1]) continue;
+      if (sq.size() > 2 && !samePath(lm.path, sq.subList(1, sq.size() - 1))) continue;
+      return lm;
+    }
+    return null;
+  }
+
+  private static boolean samePath(List<int[]> a, List<int[]> b) {
+    if (a.size() != b.size()) return false;
+    for (int i = 0; i < a.size(); i++) if (a.get(i)[0] != b.get(i)[0] || a.get(i)[1] != b.get(i)[1]) return false;
+    return true;
+  }
+
+  /** Sets up {@code s} from a FEN such as {@code W:Wc3,Kd4:Bb6,Kh8}; false if it doesn't parse. */
+  static boolean fen(GameState s, String fen) {
+    String[] parts = fen.trim().split(":");
+    if (parts.length < 1 || !(parts[0].equals("W") || parts[0].equals("B"))) return false;
+    int[] board = new int[s.N * s.N];
+    for (int i = 1; i < parts.length; i++) {
+      String p = parts[i].trim();
+      if (p.isEmpty()) continue;
+      boolean white = p.charAt(0) == 'W';
+      if (!white && p.charAt(0) != 'B') return false;
+      for (String t : p.substring(1).split(",")) {
+        t = t.trim();
+        if (t.isEmpty()) continue;
+        boolean king = t.charAt(0) == 'K';
+        Matcher m = SQUARE.matcher(king ? t.substring(1) : t);
+        if (!m.matches()) return false;
+        int x = m.group(1).charAt(0) - 'a', y = s.N - Integer.parseInt(m.group(2));
+        if (!s.in(x, y) || !s.isPlayable(x, y)) return false;
+        Piece pc = white ? (king ? Piece.W_KING : Piece.W_MAN) : (king ? Piece.B_KING : Piece.B_MAN);
+        board[y * s.N + x] = pc.ordinal();
+      }
+    }
+    s.importBoard(board, parts[0].equals("W"));
+    return true;
+  }
+
+  static String fen(GameState s) {
+    StringBuilder w = new StringBuilder(":W"), b = new StringBuilder(":B");
+    for (int y = s.N - 1; y >= 0; y--) for (int x = 0; x < s.N; x++) {
+      Piece p = s.at(x, y);
+      if (p == Piece.EMPTY) continue;
+      StringBuilder sb = p.isWhite() ? w : b;
+      if (sb.length() > 2) sb.append(',');
+      if (p.isKing()) sb.append('K');
+      sb.append(square(s, x, y));
+    }
+    return (s.whiteTurn ? "W" : "B") + w + b;
+  }
+}
@@ -0,0 +1,153 @@
+package com.shashki.tools;
+
+import com.shashki.GameState;
+import com.shashki.Move;
+import com.shashki.Rules;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the leaves of the move tree from the start position, to check the move
+ * generator against known counts and to measure its speed. A move is a whole capture
+ * sequence, as {@link GameState#legalSequences} returns it; the last ply is counted
+ * without playing it. Root moves are split over a fork/join pool.
+ *
+ * Rules start from Rules.russian(), or the preset named by rules=NAME (e.g. rules=international),
+ * given first; any public field can be overridden as name=value.
+ *
+ * Usage: Perft [depth] [divide] [threads=N] [field=value...]
+ *        Perft verify     checks perft-russian.txt (every reference line) and exits 1 on a mismatch
+ */
+public class Perft {
+  public static void main(String[] args) throws Exception {
+    if (args.length > 0 && args[0].equals("verify")) {
+      System.exit(verify() ? 0 : 1);
+    }
+    int depth = 8, threads = Runtime.getRuntime().availableProcessors();
+    boolean divide = false;
+    List<String> overrides = new ArrayList<>();
+    for (String a : args) {
+      if (a.equals("divide")) divide = true;
+      else if (a.startsWith("threads=")) threads = Integer.parseInt(a.substring(8));
+      else if (a.contains("=")) overrides.add(a);
+      else depth = Integer.parseInt(a);
+    }
+    Rules rules = rules(overrides);
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      if (divide) {
+        long total = 0;
+        GameState s = new GameState(rules);
+        for (Move m : s.legalSequences()) {
+          s.make(m);
+          long n = depth <= 1 ? 1 : pool.invoke(new Node(new GameState(s), depth - 1));
+          s.unmake(m);
+          System.out.printf(Locale.ROOT, "%s %d%n", Notation.name(s, m), n);
+          total += n;
+        }
+        System.out.printf(Locale.ROOT, "total %d%n", total);
+        return;
+      }
+      for (int d = 1; d <= depth; d++) {
+        long t0 = System.nanoTime();
+        long n = pool.invoke(new Node(new GameState(rules), d));
+        long ns = Math.max(1, System.nanoTime() - t0);
+        System.out.printf(Locale.ROOT, "perft %2d %14d %9.1f ms %8.2f Mnps%n", d, n, ns / 1e6, n * 1e3 / ns);
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  // fork over the moves of this node while the subtrees are big enough to pay for a task
+  private static final class Node extends RecursiveTask<Long> {
+    private static final long serialVersionUID = 1L;
+    private final GameState s;
+    private final int depth;
+
+    Node(GameState s, int depth) {
+      this.s = s;
+      this.depth = depth;
+    }
+
+    @Override protected Long compute() {
+      if (depth < 5) return perft(s, depth);
+      List<Node> forks = new ArrayList<>();
+      for (Move m : s.legalSequences()) {
+        s.make(m);
+        Node n = new Node(new GameState(s), depth - 1);
+        s.unmake(m);
+        n.fork();
+        forks.add(n);
+      }
+      long total = 0;
+      for (Node n : forks) total += n.join();
+      return total;
+    }
+  }
+
+  public static long perft(GameState s, int depth) {
+    return perft(s, depth, new long[depth + 1][]);
+  }
+
+  // packed moves, copied out of the generator's buffer into one of ours per depth
+  private static long perft(GameState s, int depth, long[][] buf) {
+    int count = s.legalPacked();
+    if (depth <= 1) return depth == 1 ? count : 1; // bulk count
+    long[] moves = buf[depth];
+    if (moves == null || moves.length < count) moves = buf[depth] = new long[Math.max(count, 64)];
+    for (int i = 0; i < count; i++) moves[i] = s.packed(i);
+    long n = 0;
+    for (int i = 0; i < count; i++) {
+      s.make(moves[i]);
+      n += perft(s, depth - 1, buf);
+      s.unmake(moves[i]);
+    }
+    return n;
+  }
+
+  static Rules rules(List<String> overrides) throws ReflectiveOperationException {
+    Rules r = Rules.russian();
+    for (String o : overrides) {
+      String[] kv = o.split("=", 2);
+      if (kv[0].equals("rules")) { r = (Rules) Rules.class.getMethod(kv[1]).invoke(null); continue; }
+      Field f = Rules.class.getField(kv[0]);
+      if (f.getType() == boolean.class) f.setBoolean(r, Boolean.parseBoolean(kv[1]));
+      else f.setInt(r, Integer.parseInt(kv[1]));
+    }
+    return r;
+  }
+
+  // lines: "overrides|- depth count"
+  private static boolean verify() throws IOException, ReflectiveOperationException {
+    InputStream in = Perft.class.getResourceAsStream("/perft-russian.txt");
+    if (in == null) throw new IOException("perft-russian.txt not on the classpath");
+    boolean ok = true;
+    try (BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+      for (String line; (line = r.readLine()) != null; ) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) continue;
+        String[] f = line.split("\\s+");
+        List<String> overrides = new ArrayList<>();
+        if (!f[0].equals("-")) for (String o : f[0].split(",")) overrides.add(o);
+        int depth = Integer.parseInt(f[1]);
+        long want = Long.parseLong(f[2]);
+        long got = ForkJoinPool.commonPool().invoke(new Node(new GameState(rules(overrides)), depth));
+        boolean pass = got == want;
+        ok &= pass;
+        System.out.printf(Locale.ROOT, "%-4s %s depth %d: %d%s%n", pass ? "ok" : "FAIL", f[0], depth, got, pass ? "" : " (want " + want + ")");
+      }
+    }
+    return ok;
+  }
+}
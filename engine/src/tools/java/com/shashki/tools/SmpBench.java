@@ -0,0 +1,56 @@
+package com.shashki.tools;
+
+import com.shashki.GameState;
+import com.shashki.Rules;
+import com.shashki.engine.Evaluator;
+import com.shashki.engine.SearchPool;
+import com.shashki.engine.TranspositionTable;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Time-to-depth and nodes/sec of the Lazy SMP search from the standard start position,
+ * for 1..N threads. Each run gets a fresh table, so runs don't feed each other.
+ *
+ * Usage: SmpBench [maxThreads] [depth] [runs]
+ */
+public class SmpBench {
+  public static void main(String[] args) {
+    int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+    int depth = args.length > 1 ? Integer.parseInt(args[1]) : 11;
+    int runs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+    System.out.printf(Locale.ROOT, "start position, depth %d, median of %d runs%n", depth, runs);
+    System.out.printf(Locale.ROOT, "%7s %10s %12s %10s %8s%n", "threads", "ms", "nodes", "knps", "speedup");
+
+    run(1, Math.max(1, depth - 2)); // warm up the JIT
+    double base = 0;
+    for (int t = 1; t <= maxThreads; t++) {
+      long[] ms = new long[runs];
+      long nodes = 0;
+      for (int i = 0; i < runs; i++) {
+        SearchPool.Result r = run(t, depth);
+        ms[i] = r.nanos / 1_000_000;
+        nodes += r.nodes;
+      }
+      Arrays.sort(ms);
+      long med = Math.max(1, ms[runs / 2]);
+      long total = 0;
+      for (long m : ms) total += m;
+      if (t == 1) base = med;
+      System.out.printf(Locale.ROOT, "%7d %10d %12d %10d %8.2f%n",
+        t, med, nodes / runs, nodes / Math.max(1, total), base / med);
+    }
+  }
+
+  private static SearchPool.Result run(int threads, int depth) {
+    GameState s = new GameState(Rules.russian());
+    SearchPool pool = new SearchPool(threads);
+    try {
+      return pool.search(s, s.legalSequences(), new TranspositionTable(64), new Evaluator(), depth, 0);
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
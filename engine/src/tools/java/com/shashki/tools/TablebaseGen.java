@@ -0,0 +1,220 @@
+package com.shashki.tools;
+
+import com.shashki.GameState;
+import com.shashki.Move;
+import com.shashki.Rules;
+import com.shashki.engine.Tablebase;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds {@link Tablebase} files for Rules.russian() by retrograde analysis, for all
+ * material up to a piece count.
+ *
+ * Signatures are solved in groups that only reach each other by quiet moves: same number
+ * of pieces and of men (a capture leaves the group for a smaller one, a promotion for one
+ * with fewer men, both solved earlier). Inside a group every position is re-examined
+ * until a pass changes nothing: a position is won if some move reaches a lost one and
+ * lost if every move reaches a won one; whatever is left is a draw. A win gets 1 + the
+ * distance of the shortest lost reply known when it is decided, a loss 1 + that of the
+ * longest won reply. That need not be the shortest possible win, but the winner's
+ * distance strictly falls along the stored line, so it always converts. Distances are
+ * never capped: past 255 the file takes two bytes per position.
+ *
+ * Passes are split over threads. Values are single shorts, so a thread sees either the
+ * old or the new value of a position, and both are sound.
+ *
+ * Usage: TablebaseGen outDir [maxPieces] [threads]
+ */
+public class TablebaseGen {
+  private static final int CHUNK = 1 << 12;
+
+  // one material signature being solved or solved: dist << 2 | result per position
+  private static final class Table {
+    final int wm, wk, bm, bk;
+    final short[] v;
+
+    Table(int wm, int wk, int bm, int bk) {
+      this.wm = wm; this.wk = wk; this.bm = bm; this.bk = bk;
+      this.v = new short[Tablebase.size(wm, wk, bm, bk)];
+    }
+
+    @Override public String toString() { return "" + wm + wk + bm + bk; }
+  }
+
+  private final Rules rules = Rules.russian();
+  private final Table[] tables = new Table[Tablebase.MAX_PIECES * Tablebase.MAX_PIECES * Tablebase.MAX_PIECES * Tablebase.MAX_PIECES];
+  private final ExecutorService pool;
+  private final int threads;
+
+  private TablebaseGen(int threads) {
+    this.threads = threads;
+    this.pool = Executors.newFixedThreadPool(threads);
+  }
+
+  public static void main(String[] args) throws Exception {
+    File out = new File(args.length > 0 ? args[0] : "tb");
+    int maxPieces = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+    int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+    if (maxPieces < 2 || maxPieces > Tablebase.MAX_PIECES) throw new IllegalArgumentException("maxPieces 2.." + Tablebase.MAX_PIECES);
+    if (!out.isDirectory() && !out.mkdirs()) throw new IOException("can't create " + out);
+
+    TablebaseGen gen = new TablebaseGen(threads);
+    try {
+      System.out.printf(Locale.ROOT, "%-6s %11s %11s %11s %11s %5s %6s %8s%n",
+        "table", "positions", "wins", "losses", "draws", "dtw", "passes", "ms");
+      for (int pieces = 2; pieces <= maxPieces; pieces++) {
+        for (int men = 0; men <= pieces; men++) gen.solveGroup(pieces, men, out);
+      }
+    } finally {
+      gen.pool.shutdownNow();
+    }
+  }
+
+  private void solveGroup(int pieces, int men, File out) throws Exception {
+    List<Table> group = new ArrayList<>();
+    for (int wm = 0; wm <= men; wm++) {
+      int bm = men - wm;
+      for (int wk = 0; wm + wk + bm <= pieces; wk++) {
+        int bk = pieces - wm - wk - bm;
+        if (wm + wk == 0 || bm + bk == 0) continue;
+        Table t = new Table(wm, wk, bm, bk);
+        tables[Tablebase.slot(wm, wk, bm, bk)] = t;
+        group.add(t);
+      }
+    }
+    if (group.isEmpty()) return;
+
+    long start = System.nanoTime();
+    List<int[]> chunks = new ArrayList<>(); // {table, first index}
+    for (int g = 0; g < group.size(); g++) {
+      Table t = group.get(g);
+      long[] sq = new long[4];
+      for (int i = 0; i < t.v.length; i++) {
+        Tablebase.squares(i, t.wm, t.wk, t.bm, t.bk, sq);
+        if ((sq[0] & Tablebase.TOP) != 0 || (sq[2] & Tablebase.BOTTOM) != 0) t.v[i] = Tablebase.ILLEGAL;
+      }
+      for (int i = 0; i < t.v.length; i += CHUNK) chunks.add(new int[]{g, i});
+    }
+
+    int passes = 0;
+    long changed;
+    do {
+      passes++;
+      changed = pass(group, chunks);
+    } while (changed > 0);
+
+    for (Table t : group) {
+      write(t, out);
+      long w = 0, l = 0, d = 0;
+      int dtw = 0;
+      for (short x : t.v) {
+        int r = x & 3;
+        if (r == Tablebase.WIN) w++;
+        else if (r == Tablebase.LOSS) l++;
+        else if (r == Tablebase.DRAW) d++;
+        dtw = Math.max(dtw, x >> 2);
+      }
+      System.out.printf(Locale.ROOT, "%-6s %11d %11d %11d %11d %5d %6d %8d%n",
+        t, t.v.length, w, l, d, dtw, passes, (System.nanoTime() - start) / 1_000_000);
+    }
+  }
+
+  // one sweep over the group on all threads; returns how many positions got a result
+  private long pass(List<Table> group, List<int[]> chunks) throws InterruptedException, ExecutionException {
+    AtomicInteger next = new AtomicInteger();
+    AtomicLong changed = new AtomicLong();
+    List<Future<?>> running = new ArrayList<>();
+    for (int w = 0; w < threads; w++) {
+      running.add(pool.submit(() -> {
+        GameState g = new GameState(rules);
+        long[] sq = new long[4];
+        long n = 0;
+        for (int c; (c = next.getAndIncrement()) < chunks.size(); ) {
+          Table t = group.get(chunks.get(c)[0]);
+          int from = chunks.get(c)[1], to = Math.min(t.v.length, from + CHUNK);
+          for (int i = from; i < to; i++) {
+            if (t.v[i] != 0) continue;
+            int v = solve(g, t, i, sq);
+            if (v != 0) { t.v[i] = (short) v; n++; }
+          }
+        }
+        changed.addAndGet(n);
+      }));
+    }
+    for (Future<?> f : running) f.get();
+    return changed.get();
+  }
+
+  private int solve(GameState g, Table t, int i, long[] sq) {
+    Tablebase.squares(i, t.wm, t.wk, t.bm, t.bk, sq);
+    g.whiteMen = Tablebase.fromTb(sq[0]); g.whiteKings = Tablebase.fromTb(sq[1]);
+    g.blackMen = Tablebase.fromTb(sq[2]); g.blackKings = Tablebase.fromTb(sq[3]);
+    g.whiteTurn = true;
+    List<Move> moves = g.legalSequences();
+    if (moves.isEmpty()) return Tablebase.LOSS;
+
+    int minLoss = Integer.MAX_VALUE, maxWin = -1;
+    boolean open = false;
+    for (Move m : moves) {
+      g.make(m);
+      int c = child(g);
+      g.unmake(m);
+      int r = c & 3, d = c >> 2;
+      if (r == Tablebase.LOSS) minLoss = Math.min(minLoss, d);
+      else if (r == Tablebase.WIN) maxWin = Math.max(maxWin, d);
+      else open = true;
+    }
+    if (minLoss != Integer.MAX_VALUE) return result(minLoss + 1, Tablebase.WIN);
+    if (!open) return result(maxWin + 1, Tablebase.LOSS);
+    return 0;
+  }
+
+  // a capped distance wouldn't shrink along the winning line any more, so a longer one is an error
+  private static int result(int dist, int r) {
+    if (dist > Short.MAX_VALUE >> 2) throw new IllegalStateException("distance " + dist + " doesn't fit in the table");
+    return dist << 2 | r;
+  }
+
+  // value of the position after a white move, for black to move: look it up mirrored
+  private int child(GameState g) {
+    long wm = Tablebase.mirror(Tablebase.toTb(g.blackMen)), wk = Tablebase.mirror(Tablebase.toTb(g.blackKings));
+    long bm = Tablebase.mirror(Tablebase.toTb(g.whiteMen)), bk = Tablebase.mirror(Tablebase.toTb(g.whiteKings));
+    if ((wm | wk) == 0) return Tablebase.LOSS;
+    Table t = tables[Tablebase.slot(Long.bitCount(wm), Long.bitCount(wk), Long.bitCount(bm), Long.bitCount(bk))];
+    return t.v[(int) Tablebase.index(wm, wk, bm, bk)];
+  }
+
+  private void write(Table t, File dir) throws IOException {
+    int maxDist = 0;
+    for (short x : t.v) maxDist = Math.max(maxDist, x >> 2);
+    File f = new File(dir, Tablebase.fileName(t.wm, t.wk, t.bm, t.bk));
+    try (DataOutputStream o = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f), 1 << 16))) {
+      o.writeInt(Tablebase.MAGIC);
+      o.writeInt(Tablebase.flags(rules));
+      o.writeInt(t.v.length);
+      o.writeInt(maxDist);
+      for (int i = 0; i < t.v.length; i += 4) {
+        int b = 0;
+        for (int j = 0; j < 4 && i + j < t.v.length; j++) b |= (t.v[i + j] & 3) << (2 * j);
+        o.write(b);
+      }
+      for (short x : t.v) {
+        if (maxDist > 0xFF) o.writeShort(x >> 2); else o.write(x >> 2);
+      }
+    }
+  }
+}